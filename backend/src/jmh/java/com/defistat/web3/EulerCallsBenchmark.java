@@ -0,0 +1,59 @@
+package com.defistat.web3;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.FunctionReturnDecoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.utils.Numeric;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getAPYs round trip (encode calldata, decode two uint256 words to double): precompiled templates and direct
+ * word decoding in EulerCalls vs the previous Function / FunctionEncoder / FunctionReturnDecoder → BigDecimal path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EulerCallsBenchmark {
+
+    private static final String VAULT = "0x1D2c3c5b4a8E7F60a0B1c2D3e4F5061728394aBc";
+    private static final String RETURN_DATA =
+            "0x" + Numeric.toHexStringNoPrefixZeroPadded(new BigInteger("31709791983764586504"), 64)
+                    + Numeric.toHexStringNoPrefixZeroPadded(new BigInteger("25367833587011669203"), 64);
+
+    @Benchmark
+    public void functionEncoderPath(Blackhole bh) {
+        Function f = new Function("getAPYs", List.of(new Address(VAULT)),
+                List.of(new TypeReference<Uint256>() {}, new TypeReference<Uint256>() {}));
+        bh.consume(FunctionEncoder.encode(f));
+        var out = FunctionReturnDecoder.decode(RETURN_DATA, f.getOutputParameters());
+        bh.consume(new BigDecimal((BigInteger) out.get(0).getValue()).doubleValue());
+        bh.consume(new BigDecimal((BigInteger) out.get(1).getValue()).doubleValue());
+    }
+
+    @Benchmark
+    public void eulerCalls(Blackhole bh) {
+        bh.consume(EulerCalls.getApys(VAULT));
+        bh.consume(EulerCalls.uint256(RETURN_DATA, 0));
+        bh.consume(EulerCalls.uint256(RETURN_DATA, 1));
+    }
+}
@@ -1,13 +1,20 @@
 package com.defistat.api;
 
 import com.defistat.api.dto.AssetDTO;
-import com.defistat.service.AssetService;
+import com.defistat.model.VaultCatalog;
+import com.defistat.service.VaultCatalogService;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Synchronous REST endpoint that returns Euler assets list from subgraph.
+ * REST endpoint that returns the Euler assets list from the vault catalog (refreshed from the subgraph in background).
+ * The catalog refresh time is returned in the X-Catalog-Refreshed-At header.
  * Example:
  *   GET /api/v1/assets?network=avalanche&verified=false&pageSize=500
  */
@@ -15,18 +22,39 @@ import java.util.List;
 @RequestMapping("/api/v1/assets")
 public class AssetController {
 
-    private final AssetService service;
+    private final VaultCatalogService catalog;
 
-    public AssetController(AssetService service) {
-        this.service = service;
+    public AssetController(VaultCatalogService catalog) {
+        this.catalog = catalog;
     }
 
+    /**
+     * {@code verified} and {@code pageSize} are kept for compatibility; the catalog is always complete.
+     */
     @GetMapping
-    public List<AssetDTO> listAssets(
+    public ResponseEntity<List<AssetDTO>> listAssets(
             @RequestParam(defaultValue = "avalanche") String network,
             @RequestParam(defaultValue = "false") boolean verified,
             @RequestParam(defaultValue = "500") int pageSize
     ) {
-        return service.fetchAllAssets(network, verified, pageSize);
+        VaultCatalog c = catalog.current(network);
+        return ResponseEntity.ok()
+                .header("X-Catalog-Refreshed-At", String.valueOf(c.getRefreshedAt()))
+                .body(c.getVaults());
     }
-}
\ No newline at end of file
+
+    /**
+     * Catalog staleness: size, subgraph block and age of the last refresh.
+     */
+    @GetMapping("/catalog-status")
+    public Map<String, Object> catalogStatus(@RequestParam(defaultValue = "avalanche") String network) {
+        VaultCatalog c = catalog.current(network);
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("network", network);
+        out.put("vaults", c.getVaults().size());
+        out.put("subgraphBlock", c.getSubgraphBlock());
+        out.put("refreshedAt", c.getRefreshedAt());
+        out.put("ageSeconds", c.getRefreshedAt() == null ? null : Duration.between(c.getRefreshedAt(), Instant.now()).toSeconds());
+        return out;
+    }
+}
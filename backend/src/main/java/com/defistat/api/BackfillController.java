@@ -0,0 +1,54 @@
+package com.defistat.api;
+
+import com.defistat.model.BackfillJob;
+import com.defistat.service.BackfillService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Start and control historical snapshot backfills (archive reads at past blocks).
+ */
+@RestController
+@RequestMapping("/api/v1/backfill")
+@RequiredArgsConstructor
+public class BackfillController {
+
+    private final BackfillService service;
+
+    /**
+     * Start a job. ISO-8601 instants; omit vaults to backfill every vault of the network.
+     */
+    @PostMapping
+    public BackfillJob start(
+            @RequestParam String network,
+            @RequestParam(required = false) List<String> vaults,
+            @RequestParam Instant from,
+            @RequestParam Instant to,
+            @RequestParam(defaultValue = "3600") long stepSeconds
+    ) {
+        return service.submit(network, vaults, from, to, stepSeconds);
+    }
+
+    @GetMapping
+    public List<BackfillJob> list(@RequestParam String network) {
+        return service.list(network);
+    }
+
+    @GetMapping("/{id}")
+    public BackfillJob get(@PathVariable String id) {
+        return service.get(id);
+    }
+
+    @PostMapping("/{id}/pause")
+    public BackfillJob pause(@PathVariable String id) {
+        return service.pause(id);
+    }
+
+    @PostMapping("/{id}/resume")
+    public BackfillJob resume(@PathVariable String id) {
+        return service.resume(id);
+    }
+}
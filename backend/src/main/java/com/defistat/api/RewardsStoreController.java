@@ -2,9 +2,11 @@
 package com.defistat.api;
 
 import com.defistat.schedule.RewardsIngestScheduler;
+import com.defistat.service.RewardStateCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 /**
@@ -16,10 +18,18 @@ import org.springframework.web.bind.annotation.RestController;
 public class RewardsStoreController {
 
     private final RewardsIngestScheduler scheduler;
+    private final RewardStateCache stateCache;
 
     @PostMapping("/ingest/merkl")
     public void ingestFromMerkl() {
         scheduler.run();
     }
 
+    /** Compare the in-memory ingest state with Mongo; repair=true rebuilds it when they differ. */
+    @PostMapping("/state/check")
+    public RewardStateCache.Consistency checkState(@RequestParam String network,
+                                                   @RequestParam(defaultValue = "false") boolean repair) {
+        return stateCache.verify(network.toLowerCase(java.util.Locale.ROOT).trim(), repair);
+    }
+
 }
\ No newline at end of file
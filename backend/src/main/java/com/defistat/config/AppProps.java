@@ -23,17 +23,121 @@ public class AppProps {
 
     @Data
     public static class Network {
-        private List<String> rpcUrls;
+        private List<RpcUrl> rpcUrls;
+        private RpcSelection rpcSelection = RpcSelection.P2C;
         private String chainId;
         private String utilsLens;
         private Subgraph subgraph = new Subgraph();
         private Polling polling = new Polling();
+        private Multicall multicall = new Multicall();
+        private RpcBatch rpcBatch = new RpcBatch();
+        private Hedge hedge = new Hedge();
+        private Failover failover = new Failover();
+        private Http http = new Http();
+        private Backfill backfill = new Backfill();
+        private Probe probe = new Probe();
 
     }
 
+    /** OkHttp tuning for the network's RPC endpoints (one pool shared by all endpoints of the network). */
+    @Data
+    public static class Http {
+        private int maxIdleConnections = 16;
+        private long keepAliveSeconds = 300;
+        /** In-flight RPC requests of the network, overall and per endpoint host; further calls wait for a slot. */
+        private int maxRequests = 64;
+        private int maxRequestsPerHost = 16;
+        /** Gzip JSON-RPC request bodies; responses are always accepted gzipped. */
+        private boolean gzipRequests = false;
+        private long connectTimeoutMs = 5_000;
+        private long readTimeoutMs = 15_000;
+    }
+
+    @Data
+    public static class Failover {
+        /** Overall budget for one RPC call including all failover rounds. */
+        private long deadlineMs = 30_000;
+        /** Rounds over all endpoints before giving up (one round = each healthy endpoint once). */
+        private int maxRounds = 2;
+    }
+
+    @Data
+    public static class Probe {
+        /** Background eth_blockNumber checks drive the endpoint circuit breakers and head-lag tracking. */
+        private boolean enabled = true;
+        private long intervalMs = 10_000;
+        /** Endpoints this many blocks behind the best head are only used as a last resort. */
+        private long maxLagBlocks = 10;
+    }
+
+    @Data
+    public static class Backfill {
+        /** Vault chunks read in parallel by all backfill jobs of the network (live polling has its own budget). */
+        private int concurrency = 1;
+        /** Pause between two backfilled points, leaving RPC capacity to live polling. */
+        private long pauseMs = 250;
+    }
+
+    @Data
+    public static class Hedge {
+        /** Hedge idempotent reads on a second endpoint when the primary is slow. */
+        private boolean enabled = false;
+        /** Hedge once the primary exceeds this percentile (0..1) of its recent latency. */
+        private double percentile = 0.95;
+        /** Lower bound for the hedge delay, so fast endpoints are not hedged on noise. */
+        private long minDelayMs = 100;
+        /** Extra load cap: hedges allowed per primary request (0.1 = at most ~10%). */
+        private double budgetRatio = 0.1;
+    }
+
+    /**
+     * One RPC endpoint. Either a plain URL string (see RpcUrlConverter) or an object
+     * with provider limits: {@code {url: ..., rps: 20, burst: 40}}.
+     */
+    @Data
+    public static class RpcUrl {
+        private String url;
+        /** Requests per second allowed by the provider; 0 = unlimited. */
+        private double rps = 0;
+        /** Max burst above the steady rate; 0 = one second worth of rps. */
+        private int burst = 0;
+
+        @Override
+        public String toString() {
+            return url;
+        }
+    }
+
+    /** How the first RPC endpoint of a call is chosen; the others remain failover candidates. */
+    public enum RpcSelection {
+        /** Rotate through endpoints. */
+        ROUND_ROBIN,
+        /** Power of two choices over EWMA latency and error rate. */
+        P2C
+    }
+
+    @Data
+    public static class Multicall {
+        /** Multicall3 is deployed at the same address on almost every EVM chain. */
+        private String address = "0xcA11bde05203dE3Ed7c59ef24F6B2F22F97B9f8c";
+        private boolean enabled = true;
+        /** Max vaults packed into one aggregate3 call (each vault adds 2-3 sub-calls). */
+        private int chunkSize = 50;
+    }
+
+    @Data
+    public static class RpcBatch {
+        /** Send eth_calls as JSON-RPC batch arrays (used when multicall is off or fails). */
+        private boolean enabled = false;
+        /** Max requests per HTTP POST; most providers cap batches at 50–100. */
+        private int maxSize = 50;
+    }
+
     @Data
     public static class Subgraph {
         private String url;
+        /** Id ranges paged concurrently on a full vault scan; 1 = one sequential keyset scan. */
+        private int parallelism = 4;
 
         public String getUrl() {
             return url;
@@ -47,6 +151,16 @@ public class AppProps {
     @Data
     public static class Polling {
         private String cron = "0 0/10 * * * ?";
+        /** Pin reads this many blocks behind head so lagging RPC endpoints already have the block. */
+        private int pinLagBlocks = 2;
+        /** Vault chunks read in parallel per network; keep within the RPC capacity (rpcUrls rps). */
+        private int concurrency = 4;
+        /** Re-read only vaults that emitted events since the last cycle; the rest get heartbeat snapshots. */
+        private boolean incremental = false;
+        /** Block span per eth_getLogs request (halved automatically if the provider rejects it). */
+        private int logsBlockRange = 2000;
+        /** Force a full on-chain read at least this often, since interest accrues without events. */
+        private int fullRefreshMinutes = 360;
 
     }
 
@@ -1,19 +1,28 @@
 package com.defistat.config;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.Map;
+import java.util.function.Consumer;
 
 @Component
 public class GraphQLClient {
     private final RestTemplate restTemplate;
+    private final ObjectMapper mapper;
 
-    public GraphQLClient() {
-        this.restTemplate = new RestTemplate();
+    public GraphQLClient(@Qualifier("graphQlRestTemplate") RestTemplate restTemplate, ObjectMapper mapper) {
+        this.restTemplate = restTemplate;
+        this.mapper = mapper;
     }
 
     /**
@@ -24,10 +33,7 @@ public class GraphQLClient {
      */
     @SuppressWarnings("unchecked")
     public Map<String, Object> post(String url, String query, Map<String, Object> variables) {
-        Map<String, Object> payload = Map.of(
-                "query", query,
-                "variables", variables == null ? Map.of() : variables
-        );
+        Map<String, Object> payload = payload(query, variables);
 
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
@@ -43,4 +49,71 @@ public class GraphQLClient {
         }
         return (Map<String, Object>) m;
     }
-}
\ No newline at end of file
+
+    /**
+     * Sends a GraphQL POST request and streams the list at data.{@code field}: every element is bound to
+     * {@code type} straight from the response stream and handed to {@code onItem}, so the page is never
+     * materialised as a Map tree.
+     * @return number of items passed to onItem
+     * @throws IllegalStateException if the response carries GraphQL errors and no items
+     */
+    public <T> int postForEach(String url, String query, Map<String, Object> variables,
+                               String field, Class<T> type, Consumer<? super T> onItem) {
+        Map<String, Object> payload = payload(query, variables);
+        Integer count = restTemplate.execute(url, HttpMethod.POST,
+                request -> {
+                    request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                    mapper.writeValue(request.getBody(), payload);
+                },
+                response -> {
+                    try (JsonParser p = mapper.getFactory().createParser(response.getBody())) {
+                        return readList(p, field, type, onItem);
+                    }
+                });
+        return count == null ? 0 : count;
+    }
+
+    // ---------------------------- Internals ----------------------------
+
+    private static Map<String, Object> payload(String query, Map<String, Object> variables) {
+        return Map.of(
+                "query", query,
+                "variables", variables == null ? Map.of() : variables
+        );
+    }
+
+    /** Walks {"data":{field:[...]}, "errors":[...]} in a single pass; other fields are skipped. */
+    private <T> int readList(JsonParser p, String field, Class<T> type, Consumer<? super T> onItem) throws java.io.IOException {
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+            throw new IllegalStateException("Unexpected GraphQL response: expected JSON object");
+        }
+        int count = 0;
+        JsonNode errors = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            JsonToken value = p.nextToken();
+            if ("data".equals(name) && value == JsonToken.START_OBJECT) {
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String dataField = p.currentName();
+                    JsonToken list = p.nextToken();
+                    if (field.equals(dataField) && list == JsonToken.START_ARRAY) {
+                        while (p.nextToken() != JsonToken.END_ARRAY) {
+                            onItem.accept(mapper.readValue(p, type));
+                            count++;
+                        }
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            } else if ("errors".equals(name)) {
+                errors = mapper.readTree(p);
+            } else {
+                p.skipChildren();
+            }
+        }
+        if (errors != null && count == 0) {
+            throw new IllegalStateException("GraphQL errors: " + errors);
+        }
+        return count;
+    }
+}
@@ -1,9 +1,12 @@
 // com.defistat.merkl.MerklConfig.java
 package com.defistat.config;
 
+import org.apache.hc.client5.http.config.ConnectionConfig;
 import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
 import org.apache.hc.core5.util.Timeout;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -34,13 +37,39 @@ public class RestTemplateConfig {
         return buildRestTemplate(5, 15, "Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/537.36 (KHTML, like Gecko");
     }
 
+    /**
+     * Subgraph client: explicit keep-alive pool so paginated queries reuse connections per subgraph host.
+     */
+    @Bean
+    @Qualifier("graphQlRestTemplate")
+    public RestTemplate graphQlRestTemplate() {
+        RequestConfig rc = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofSeconds(5))
+                .setResponseTimeout(Timeout.ofSeconds(30))
+                .build();
+        PoolingHttpClientConnectionManager pool = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(32)
+                .setMaxConnPerRoute(8)
+                .setDefaultConnectionConfig(connectionConfig(5))
+                .build();
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(pool)
+                .setDefaultRequestConfig(rc)
+                .evictIdleConnections(Timeout.ofSeconds(60))
+                .build();
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+
     private RestTemplate buildRestTemplate(int connectTimeoutSec, int readTimeoutSec, String userAgent) {
         RequestConfig rc = RequestConfig.custom()
                 .setConnectionRequestTimeout(Timeout.ofSeconds(connectTimeoutSec))
-                .setConnectTimeout(Timeout.ofSeconds(connectTimeoutSec))
                 .setResponseTimeout(Timeout.ofSeconds(readTimeoutSec))
                 .build();
+        PoolingHttpClientConnectionManager pool = PoolingHttpClientConnectionManagerBuilder.create()
+                .setDefaultConnectionConfig(connectionConfig(connectTimeoutSec))
+                .build();
         CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(pool)
                 .setDefaultRequestConfig(rc)
                 .build();
         HttpComponentsClientHttpRequestFactory f = new HttpComponentsClientHttpRequestFactory(httpClient);
@@ -61,4 +90,11 @@ public class RestTemplateConfig {
         return rt;
     }
 
+    /** Connect timeout lives on the connection manager (RequestConfig's is deprecated in HttpClient 5). */
+    private static ConnectionConfig connectionConfig(int connectTimeoutSec) {
+        return ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofSeconds(connectTimeoutSec))
+                .build();
+    }
+
 }
\ No newline at end of file
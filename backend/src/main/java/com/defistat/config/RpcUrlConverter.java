@@ -0,0 +1,19 @@
+package com.defistat.config;
+
+import org.springframework.boot.context.properties.ConfigurationPropertiesBinding;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lets {@code app.network.<net>.rpcUrls} keep accepting plain URL strings
+ * (including comma-separated env values) next to the object form with rate limits.
+ */
+@Component
+@ConfigurationPropertiesBinding
+public class RpcUrlConverter implements Converter<String, AppProps.RpcUrl> {
+
+    @Override
+    public AppProps.RpcUrl convert(String source) {
+        return new AppProps.RpcUrl().setUrl(source.trim());
+    }
+}
@@ -2,6 +2,7 @@ package com.defistat.model;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -16,6 +17,10 @@ import java.time.Instant;
 @AllArgsConstructor
 @Builder
 @Document("asset_snapshots")
+// backfill rows are unique per (network, vault, block), so overlapping or re-run jobs never duplicate them;
+// live rows are outside the partial index (a poll cycle may legitimately repeat a block)
+@CompoundIndex(name = "uniq_backfill_vault_block", def = "{'network':1,'vaultAddress':1,'blockNumber':1}",
+        unique = true, partialFilter = "{'backfill': true}")
 public class AssetSnapshot {
 
     @Id
@@ -39,6 +44,15 @@ public class AssetSnapshot {
     @Indexed
     private Instant tsTick;
 
+    /** Block number all on-chain reads of this poll cycle were pinned to. */
+    private Long blockNumber;
+
+    /** True when values were carried over from the previous snapshot (no events for the vault since then). */
+    private boolean heartbeat;
+
+    /** True when written by the archive backfill; backfill upserts only ever match such rows. */
+    private boolean backfill;
+
     /** Annualized rates in percent (APR), already converted from on-chain units. */
     private double borrowApyPct;
     private double supplyApyPct;
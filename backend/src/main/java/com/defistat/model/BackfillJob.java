@@ -0,0 +1,51 @@
+package com.defistat.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Historical snapshot backfill over [from, to] every stepSeconds, read at archive blocks.
+ * Progress is stored after every point, so a restarted or paused job resumes at {@code nextTs}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document("backfill_jobs")
+public class BackfillJob {
+
+    public enum Status { RUNNING, PAUSED, DONE, FAILED }
+
+    @Id
+    private String id;
+
+    @Indexed
+    private String network;
+
+    /** Lower-case vault addresses; empty = every vault in the catalog when the job runs. */
+    private List<String> vaults;
+
+    private Instant from;
+    private Instant to;
+    private long stepSeconds;
+
+    @Indexed
+    private Status status;
+
+    /** First point not yet written. */
+    private Instant nextTs;
+
+    private int pointsDone;
+    private int pointsTotal;
+    private long rowsWritten;
+
+    private String error;
+
+    private Instant createdAt;
+    private Instant updatedAt;
+}
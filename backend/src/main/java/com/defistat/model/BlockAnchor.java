@@ -0,0 +1,33 @@
+package com.defistat.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Known (block, timestamp) pair of a network; sparse anchors for block-at-time lookups.
+ * Id is "network:block", so storing the same anchor twice is an idempotent overwrite.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document("block_anchors")
+@CompoundIndex(name = "by_net_block", def = "{'network':1,'block':1}")
+public class BlockAnchor {
+
+    @Id
+    private String id;
+
+    private String network;
+
+    private long block;
+
+    /** Block timestamp, epoch seconds. */
+    private long ts;
+
+    public static BlockAnchor of(String network, long block, long ts) {
+        return new BlockAnchor(network + ":" + block, network, block, ts);
+    }
+}
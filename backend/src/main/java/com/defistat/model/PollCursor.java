@@ -0,0 +1,37 @@
+package com.defistat.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Per-network progress of asset polling, so restarts resume where they left off.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document("poll_cursors")
+public class PollCursor {
+
+    /** Network key, e.g., "avalanche" / "base". */
+    @Id
+    private String network;
+
+    /** Last block a poll cycle was pinned to (logs are scanned from lastBlock + 1). */
+    private Long lastBlock;
+
+    /** When every vault was last read on-chain (incremental cycles only re-read active vaults). */
+    private Instant lastFullAt;
+
+    /**
+     * Vaults whose read failed in the last cycle (lower-case). The cursor still moves on, so the next cycle
+     * re-reads them regardless of logs instead of carrying their pre-event state forward as heartbeats.
+     */
+    private Set<String> pendingVaults;
+
+    private Instant updatedAt;
+}
@@ -0,0 +1,32 @@
+package com.defistat.model;
+
+import com.defistat.api.dto.AssetDTO;
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Persisted vault list of one network, refreshed incrementally from the subgraph.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document("vault_catalog")
+public class VaultCatalog {
+
+    /** Network key, e.g., "avalanche" / "base". */
+    @Id
+    private String network;
+
+    private List<AssetDTO> vaults;
+
+    /** Subgraph block the catalog is complete up to; next refresh asks for changes from here on. */
+    private Long subgraphBlock;
+
+    /** Last successful refresh (full or incremental). */
+    private Instant refreshedAt;
+}
@@ -0,0 +1,12 @@
+package com.defistat.repo;
+
+import com.defistat.model.BackfillJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.List;
+
+public interface BackfillJobRepo extends MongoRepository<BackfillJob, String> {
+    List<BackfillJob> findByStatus(BackfillJob.Status status);
+
+    List<BackfillJob> findByNetworkOrderByCreatedAtDesc(String network);
+}
@@ -0,0 +1,10 @@
+package com.defistat.repo;
+
+import com.defistat.model.BlockAnchor;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.List;
+
+public interface BlockAnchorRepo extends MongoRepository<BlockAnchor, String> {
+    List<BlockAnchor> findByNetworkOrderByBlockAsc(String network);
+}
@@ -0,0 +1,7 @@
+package com.defistat.repo;
+
+import com.defistat.model.PollCursor;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface PollCursorRepo extends MongoRepository<PollCursor, String> {
+}
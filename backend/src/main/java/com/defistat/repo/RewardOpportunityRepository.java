@@ -3,6 +3,7 @@ package com.defistat.repo;
 
 import com.defistat.model.RewardOpportunityDocument;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
 import java.time.Instant;
 import java.util.List;
@@ -37,5 +38,11 @@ public interface RewardOpportunityRepository extends MongoRepository<RewardOppor
 
     Optional<RewardOpportunityDocument> findTopBySourceAndOpportunityIdOrderByTsDesc(String source, String opportunityId);
 
+    /** Full history of (network, vault, role), oldest first, with only the fields APR resolution needs. */
+    @Query(value = "{ 'network': ?0, 'vaultAddress': ?1, 'role': ?2 }",
+            fields = "{ 'ts': 1, 'status': 1, 'rewardApyPct': 1 }",
+            sort = "{ 'ts': 1 }")
+    List<RewardOpportunityDocument> findTimeline(String network, String vaultAddress, String role);
+
     List<RewardOpportunityDocument> findByNetworkAndVaultAddressAndRoleAndTsBetweenOrderByTsAsc(String network, String vault, String role, Instant from, Instant to);
 }
\ No newline at end of file
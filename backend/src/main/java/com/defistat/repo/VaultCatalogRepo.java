@@ -0,0 +1,7 @@
+package com.defistat.repo;
+
+import com.defistat.model.VaultCatalog;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface VaultCatalogRepo extends MongoRepository<VaultCatalog, String> {
+}
@@ -0,0 +1,32 @@
+package com.defistat.schedule;
+
+import com.defistat.config.AppProps;
+import com.defistat.service.VaultCatalogService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the vault catalog of every configured network in sync with its subgraph (incremental refresh).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class VaultCatalogScheduler {
+
+    private final VaultCatalogService catalog;
+    private final AppProps props;
+
+    @Scheduled(fixedDelayString = "${app.catalog.refreshMs:300000}", initialDelayString = "${app.catalog.initialDelayMs:10000}")
+    public void run() {
+        props.getNetwork().keySet().forEach(net -> {
+                    try {
+                        catalog.refresh(net);
+                    } catch (Exception e) {
+                        log.error("[catalog-scheduler] network={} failed: {}", net, e.getMessage());
+                    }
+                }
+        );
+    }
+}
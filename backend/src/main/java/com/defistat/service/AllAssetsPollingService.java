@@ -3,19 +3,30 @@ package com.defistat.service;
 import com.defistat.api.dto.AssetDTO;
 import com.defistat.config.AppProps;
 import com.defistat.model.AssetSnapshot;
+import com.defistat.model.PollCursor;
 import com.defistat.repo.AssetSnapshotRepo;
+import com.defistat.repo.PollCursorRepo;
 import com.defistat.web3.EulerClient;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.math.BigInteger;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Periodically fetches all vaults from subgraph (per network),
+ * Periodically takes all vaults from the vault catalog (per network),
  * then queries on-chain Lens/Vault to compute borrow/supply APY and utilization,
  * and stores snapshots in MongoDB.
  */
@@ -24,57 +35,178 @@ import java.util.Map;
 @Slf4j
 public class AllAssetsPollingService {
 
-    private final AssetService assetService;        // uses GraphQL subgraph (synchronous)
+    private final VaultCatalogService vaultCatalog; // vault list, refreshed from the subgraph in background
     private final EulerClient eulerClient;          // on-chain calls (synchronous)
     private final AssetSnapshotRepo snapshotRepo;
+    private final PollCursorRepo cursorRepo;
     private final AppProps props;
 
     // Simple "last run" guard per network to honor configured interval
     private final Map<String, Long> lastRunSec = new java.util.concurrent.ConcurrentHashMap<>();
 
+    // Latest row written per network/vault; source of heartbeat rows for vaults without events
+    private final Map<String, Map<String, AssetSnapshot>> lastRows = new java.util.concurrent.ConcurrentHashMap<>();
+
     /**
      * Poll one network (e.g., "avalanche"): fetch list of assets, then snapshot each.
+     * All reads of the cycle are pinned to one block resolved at the start of the cycle.
+     * In incremental mode only vaults that emitted eVault events since the last cycle are re-read;
+     * the others get a heartbeat copy of their previous snapshot.
      */
     public void pollNetwork(String network) {
 
         try {
-            // 1) subgraph: full list of vaults
-            List<AssetDTO> assets = assetService.fetchAllAssets(network, false, 500);
+            // 1) catalog: full list of vaults (no subgraph round trip per cycle)
+            List<AssetDTO> assets = vaultCatalog.list(network);
 
             var tsTick = Instant.now();
+            AppProps.Network net = props.require(network);
+
+            // Pin the whole cycle to one block (a bit behind head so lagging endpoints have it)
+            int lag = Math.max(0, net.getPolling().getPinLagBlocks());
+            BigInteger block = eulerClient.latestBlock(network).subtract(BigInteger.valueOf(lag)).max(BigInteger.ZERO);
+            PollCursor cursor = cursorRepo.findById(network).orElse(null);
+            if (cursor != null && cursor.getLastBlock() != null && block.longValue() <= cursor.getLastBlock()) {
+                log.info("[assets-poll] {} still at block {}, skipping duplicate cycle", network, block);
+                return;
+            }
 
-            // 2) on-chain per vault: APYs and utilization
             Instant ts = Instant.now();
-            List<AssetSnapshot> batch = new ArrayList<>(assets.size());
-
-            for (AssetDTO a : assets) {
-                log.info("Start getting snapshot for {} {} at tsTick {}", network, a.vaultAddress, tsTick);
-                try {
-                    var snap = eulerClient.fetchSingle(network, a.vaultAddress);
-                    AssetSnapshot row = AssetSnapshot.builder()
-                            .network(network)
-                            .vaultAddressOriginal(a.vaultAddress)
-                            .vaultAddress(a.vaultAddress.toLowerCase())
-                            .ts(ts)
-                            .tsTick(tsTick)
-                            .borrowApyPct(snap.borrowApyPct)
-                            .supplyApyPct(snap.supplyApyPct)
-                            .utilizationPct(snap.utilizationPct)
-                            .vaultSymbol(a.vaultSymbol)
-                            .vaultName(a.vaultName)
-                            .build();
-                    batch.add(row);
-                } catch (Exception ex) {
-                    // Log and continue with other assets; don't stop the whole batch.
-                    log.error("[assets-poll] failed to fetch snapshot for {} {}: {}", network, a.vaultAddress, ex.getMessage());
+            Map<String, AssetSnapshot> previous = lastRows.computeIfAbsent(network, k -> new java.util.concurrent.ConcurrentHashMap<>());
+            List<AssetDTO> toRead = assets;
+            List<AssetSnapshot> heartbeats = new ArrayList<>();
+            boolean full = true;
+
+            if (isIncrementalCycle(net, cursor, ts)) {
+                Set<String> pending = cursor.getPendingVaults() == null ? Set.of() : cursor.getPendingVaults();
+                // 2a) logs: which vaults changed state since the last processed block
+                Set<String> active = eulerClient.activeVaults(network, assets.stream().map(a -> a.vaultAddress).toList(),
+                        BigInteger.valueOf(cursor.getLastBlock() + 1), block, net.getPolling().getLogsBlockRange());
+                toRead = new ArrayList<>();
+                for (AssetDTO a : assets) {
+                    String key = a.vaultAddress.toLowerCase();
+                    AssetSnapshot prev = previous.get(key);
+                    if (active.contains(key) || pending.contains(key) || prev == null) {
+                        toRead.add(a);
+                    } else {
+                        heartbeats.add(heartbeat(prev, ts, tsTick, block));
+                    }
                 }
+                full = false;
+                log.info("[assets-poll] {} blocks {}..{}: {} active vaults, {} heartbeats",
+                        network, cursor.getLastBlock() + 1, block, toRead.size(), heartbeats.size());
+            }
+
+            // 2b) on-chain: vault chunks fetched concurrently (virtual threads), bounded per network
+            List<AssetSnapshot> batch = readVaults(network, net, toRead, ts, tsTick, block);
+
+            // vaults that were due but not read: retried next cycle whatever the logs say
+            Set<String> failed = new HashSet<>();
+            for (AssetDTO a : toRead) failed.add(a.vaultAddress.toLowerCase());
+            for (AssetSnapshot row : batch) failed.remove(row.getVaultAddress());
+            if (!failed.isEmpty()) {
+                log.warn("[assets-poll] {} of {} vault reads failed for {} at block {}; re-read next cycle",
+                        failed.size(), toRead.size(), network, block);
             }
 
+            batch.addAll(heartbeats);
+
             if (!batch.isEmpty()) snapshotRepo.saveAll(batch);
+            for (AssetSnapshot row : batch) previous.put(row.getVaultAddress(), row);
+
+            cursorRepo.save(PollCursor.builder()
+                    .network(network)
+                    .lastBlock(block.longValue())
+                    .lastFullAt(full ? ts : cursor.getLastFullAt())
+                    .pendingVaults(failed)
+                    .updatedAt(ts)
+                    .build());
 
         } catch (Exception e) {
             // subgraph/network failure — log and let scheduler retry next minute
             System.err.println("[assets-poll] subgraph failed for network " + network + ": " + e.getMessage());
         }
     }
+
+    /** Incremental cycle: enabled, a previous block to scan from, and the last full read is recent enough. */
+    private static boolean isIncrementalCycle(AppProps.Network net, PollCursor cursor, Instant now) {
+        if (!net.getPolling().isIncremental() || cursor == null || cursor.getLastBlock() == null || cursor.getLastFullAt() == null) {
+            return false;
+        }
+        Duration sinceFull = Duration.between(cursor.getLastFullAt(), now);
+        return sinceFull.toMinutes() < net.getPolling().getFullRefreshMinutes();
+    }
+
+    private List<AssetSnapshot> readVaults(String network, AppProps.Network net, List<AssetDTO> assets,
+                                           Instant ts, Instant tsTick, BigInteger block) {
+        int chunk = Math.max(1, net.getMulticall().getChunkSize());
+        Semaphore permits = new Semaphore(Math.max(1, net.getPolling().getConcurrency()));
+        List<AssetSnapshot> batch = Collections.synchronizedList(new ArrayList<>(assets.size()));
+        AtomicInteger done = new AtomicInteger();
+        log.info("Start getting snapshots for {} ({} vaults) at tsTick {} block {}", network, assets.size(), tsTick, block);
+
+        try (ExecutorService exec = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < assets.size(); i += chunk) {
+                List<AssetDTO> part = assets.subList(i, Math.min(i + chunk, assets.size()));
+                exec.submit(() -> {
+                    permits.acquireUninterruptibly();
+                    try {
+                        // One batched (Multicall3) read per chunk instead of 3–5 eth_calls per vault
+                        List<String> vaults = part.stream().map(a -> a.vaultAddress).toList();
+                        Map<String, EulerClient.VaultSnapshot> snaps = eulerClient.fetchBatch(network, vaults, block);
+                        for (AssetDTO a : part) {
+                            var snap = snaps.get(a.vaultAddress);
+                            if (snap == null) {
+                                // Read failed for this vault only; don't stop the whole batch.
+                                log.error("[assets-poll] failed to fetch snapshot for {} {}", network, a.vaultAddress);
+                                continue;
+                            }
+                            batch.add(toRow(network, a, snap, ts, tsTick, block));
+                        }
+                    } catch (Exception ex) {
+                        log.error("[assets-poll] chunk of {} vaults failed for {}: {}", part.size(), network, ex.getMessage());
+                    } finally {
+                        permits.release();
+                        log.info("[assets-poll] {} progress {}/{} vaults", network, done.addAndGet(part.size()), assets.size());
+                    }
+                });
+            }
+        } // close() waits for all chunks
+        return new ArrayList<>(batch);
+    }
+
+    /** Copy of the previous row re-stamped for this cycle (vault had no events, so its state is unchanged). */
+    private static AssetSnapshot heartbeat(AssetSnapshot prev, Instant ts, Instant tsTick, BigInteger block) {
+        return AssetSnapshot.builder()
+                .network(prev.getNetwork())
+                .vaultAddressOriginal(prev.getVaultAddressOriginal())
+                .vaultAddress(prev.getVaultAddress())
+                .ts(ts)
+                .tsTick(tsTick)
+                .blockNumber(block.longValue())
+                .heartbeat(true)
+                .borrowApyPct(prev.getBorrowApyPct())
+                .supplyApyPct(prev.getSupplyApyPct())
+                .utilizationPct(prev.getUtilizationPct())
+                .vaultSymbol(prev.getVaultSymbol())
+                .vaultName(prev.getVaultName())
+                .build();
+    }
+
+    private static AssetSnapshot toRow(String network, AssetDTO a, EulerClient.VaultSnapshot snap,
+                                       Instant ts, Instant tsTick, BigInteger block) {
+        return AssetSnapshot.builder()
+                .network(network)
+                .vaultAddressOriginal(a.vaultAddress)
+                .vaultAddress(a.vaultAddress.toLowerCase())
+                .ts(ts)
+                .tsTick(tsTick)
+                .blockNumber(block.longValue())
+                .borrowApyPct(snap.borrowApyPct)
+                .supplyApyPct(snap.supplyApyPct)
+                .utilizationPct(snap.utilizationPct)
+                .vaultSymbol(a.vaultSymbol)
+                .vaultName(a.vaultName)
+                .build();
+    }
 }
\ No newline at end of file
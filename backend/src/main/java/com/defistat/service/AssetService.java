@@ -3,15 +3,22 @@ package com.defistat.service;
 import com.defistat.api.dto.AssetDTO;
 import com.defistat.config.AppProps;
 import com.defistat.config.GraphQLClient;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /**
  * Synchronous service that fetches Euler assets (vaults) from a network-specific subgraph.
  * - Discovers the correct top-level list field (e.g., "vaults", "evaults", "markets") by probing candidates.
- * - Paginates synchronously until an empty/short page is returned.
+ * - Paginates by id (keyset, id_gt) until an empty/short page is returned; full scans page several
+ *   id ranges concurrently (AppProps.Network.subgraph.parallelism).
  */
 @Service
 public class AssetService {
@@ -65,33 +72,44 @@ public class AssetService {
                 + "'. Tried: " + CANDIDATE_FIELDS);
     }
 
-    private static String buildVaultsQuery(String field) {
+    /**
+     * Keyset page query: ordered by id, starting after {@code lastId} (null = start of {@code range}),
+     * optionally only entities changed at or after {@code sinceBlock} (graph-node _change_block filter).
+     * Ids are inlined as string literals, which graph-node accepts for both ID and Bytes ids.
+     */
+    private static String buildVaultsQuery(String field, String lastId, IdRange range, Long sinceBlock) {
+        List<String> filters = new ArrayList<>(3);
+        if (lastId != null) filters.add(idFilter("id_gt", lastId));
+        else if (range.from() != null) filters.add(idFilter("id_gte", range.from()));
+        if (range.to() != null) filters.add(idFilter("id_lt", range.to()));
+        if (sinceBlock != null) filters.add("_change_block:{number_gte:" + sinceBlock + "}");
+        String where = filters.isEmpty() ? "" : ",where:{" + String.join(",", filters) + "}";
         // Request basic info for vault + underlying
-        return "query Vaults($first:Int!,$skip:Int!){ " + field +
-                "(first:$first,skip:$skip,orderBy:id,orderDirection:asc) {" +
+        return "query Vaults($first:Int!){ " + field +
+                "(first:$first" + where + ",orderBy:id,orderDirection:asc) {" +
                 "  id symbol name evault" +
                 "} }";
     }
 
-    @SuppressWarnings("unchecked")
-    private static List<Map<String, Object>> extractList(Map<String, Object> resp, String field) {
-        Object dataObj = resp.get("data");
-        if (!(dataObj instanceof Map<?,?> data)) return List.of();
-        Object listObj = data.get(field);
-        if (listObj instanceof List<?> list) {
-            return (List<Map<String, Object>>) list;
-        }
-        return List.of();
+    private static String idFilter(String op, String id) {
+        return op + ":\"" + id.replace("\\", "").replace("\"", "") + "\"";
     }
 
     /**
-     * Fetch one page synchronously.
+     * Fetch one page synchronously: up to {@code first} vaults with id greater than {@code lastId},
+     * each handed to {@code onVault} as soon as it is parsed.
+     * @return number of vaults on the page
      */
-    public List<Map<String, Object>> fetchAssetsPage(String network, String field, int first, int skip) {
+    public int fetchAssetsPage(String network, String field, int first, String lastId, Consumer<AssetDTO> onVault) {
+        return fetchAssetsPage(network, field, first, lastId, IdRange.ALL, null, onVault);
+    }
+
+    private int fetchAssetsPage(String network, String field, int first, String lastId, IdRange range, Long sinceBlock,
+                                Consumer<AssetDTO> onVault) {
         String url = subgraphUrl(network);
-        String query = buildVaultsQuery(field);
-        Map<String, Object> resp = client.post(url, query, Map.of("first", first, "skip", skip));
-        return extractList(resp, field);
+        String query = buildVaultsQuery(field, lastId, range, sinceBlock);
+        // GraphQL errors (e.g. an unsupported _change_block filter) surface as IllegalStateException
+        return client.postForEach(url, query, Map.of("first", first), field, VaultRow.class, row -> onVault.accept(row.toDto()));
     }
 
     /**
@@ -101,34 +119,142 @@ public class AssetService {
      * @param pageSize     page size (defaults to 500 if <=0)
      */
     public List<AssetDTO> fetchAllAssets(String network, boolean verifiedOnly, int pageSize) {
+        return fetchAssets(network, pageSize, null);
+    }
+
+    /**
+     * Only vaults created or updated at or after {@code sinceBlock} (subgraph block number).
+     * Fails on subgraphs without _change_block support; callers fall back to {@link #fetchAllAssets}.
+     */
+    public List<AssetDTO> fetchAssetsChangedSince(String network, long sinceBlock, int pageSize) {
+        return fetchAssets(network, pageSize, sinceBlock);
+    }
+
+    /**
+     * Block the subgraph has indexed up to (_meta.block.number).
+     */
+    public long subgraphBlock(String network) {
+        Map<String, Object> resp = client.post(subgraphUrl(network), "{ _meta { block { number } } }", Map.of());
+        if (resp.get("data") instanceof Map<?, ?> data
+                && data.get("_meta") instanceof Map<?, ?> meta
+                && meta.get("block") instanceof Map<?, ?> block
+                && block.get("number") instanceof Number n) {
+            return n.longValue();
+        }
+        throw new IllegalStateException("Subgraph _meta.block.number unavailable for network: " + network + " resp=" + resp.get("errors"));
+    }
+
+    /**
+     * Stream every vault of the network to {@code sink}. The first page is fetched unsplit, so a network that
+     * fits in one page costs one request. Only when it is full, and subgraph.parallelism > 1, the ids after it
+     * are split into ranges by the first hex digit after "0x"; up to parallelism ranges are paged concurrently
+     * (keyset within each range), and vaults are passed on as soon as their page is parsed.
+     * The sink is called by one thread at a time, in id order within a range but not across ranges.
+     */
+    public void forEachAsset(String network, int pageSize, Consumer<AssetDTO> sink) {
         int first = pageSize > 0 ? pageSize : 500;
         String field = resolveVaultField(network);
 
-        List<AssetDTO> result = new ArrayList<>();
-        int skip = 0;
+        String[] firstPageLast = new String[1];
+        int size = fetchAssetsPage(network, field, first, null, IdRange.ALL, null, dto -> {
+            firstPageLast[0] = dto.vaultAddress;
+            sink.accept(dto);
+        });
+        if (size < first) return;
+        String after = firstPageLast[0];
 
-        while (true) {
-            List<Map<String, Object>> page = fetchAssetsPage(network, field, first, skip);
-            if (page.isEmpty()) break;
+        int parallelism = Math.max(1, props.require(network).getSubgraph().getParallelism());
+        if (parallelism == 1) {
+            scanRange(network, field, first, IdRange.ALL, after, null, sink);
+            return;
+        }
 
-            for (Map<String, Object> v : page) {
-                result.add(mapVaultToDto(v));
+        Object lock = new Object();
+        Consumer<AssetDTO> serialized = dto -> {
+            synchronized (lock) {
+                sink.accept(dto);
             }
+        };
+        List<Future<?>> ranges = new ArrayList<>(16);
+        try (ExecutorService exec = Executors.newFixedThreadPool(parallelism, Thread.ofVirtual().factory())) {
+            for (IdRange range : IdRange.BY_FIRST_HEX_DIGIT) {
+                if (range.to() != null && range.to().compareTo(after) <= 0) continue; // covered by the first page
+                String startAfter = range.from() == null || range.from().compareTo(after) <= 0 ? after : null;
+                ranges.add(exec.submit(() -> scanRange(network, field, first, range, startAfter, null, serialized)));
+            }
+        }
+        for (Future<?> f : ranges) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while fetching vaults for " + network, e);
+            }
+        }
+    }
 
-            if (page.size() < first) break;  // last page reached
-            skip += first;
+    private List<AssetDTO> fetchAssets(String network, int pageSize, Long sinceBlock) {
+        List<AssetDTO> result = new ArrayList<>();
+        if (sinceBlock == null) {
+            forEachAsset(network, pageSize, result::add);
+            result.sort(Comparator.comparing(a -> a.vaultAddress));
+        } else {
+            scanRange(network, resolveVaultField(network), pageSize > 0 ? pageSize : 500, IdRange.ALL, null, sinceBlock, result::add);
         }
 
         // TODO: if verifiedOnly is true, filter by a verified set (governedPerspective)
         return result;
     }
 
-    @SuppressWarnings("unchecked")
-    private static AssetDTO mapVaultToDto(Map<String, Object> v) {
-        AssetDTO dto = new AssetDTO();
-        dto.vaultAddress = (String) v.get("id");
-        dto.vaultSymbol  = (String) v.get("symbol");
-        dto.vaultName    = (String) v.get("name");
-        return dto;
+    /**
+     * Keyset pagination inside one id range, after {@code startAfter} (null = range start):
+     * every page is an index seek on id, unlike skip which rescans and is capped.
+     */
+    private void scanRange(String network, String field, int first, IdRange range, String startAfter, Long sinceBlock,
+                           Consumer<AssetDTO> sink) {
+        String lastId = startAfter;
+        while (true) {
+            String[] pageLast = new String[1];
+            int size = fetchAssetsPage(network, field, first, lastId, range, sinceBlock, dto -> {
+                pageLast[0] = dto.vaultAddress;
+                sink.accept(dto);
+            });
+            if (size == 0) break;
+            if (size < first) break;  // last page reached
+            lastId = pageLast[0];
+        }
+    }
+
+    /** Half-open id interval [from, to); null = unbounded. */
+    private record IdRange(String from, String to) {
+        static final IdRange ALL = new IdRange(null, null);
+
+        /** [..0x10), [0x10..0x20), ... [0xf0..): covers every id, including non-hex ones, exactly once. */
+        static final List<IdRange> BY_FIRST_HEX_DIGIT = buildHexRanges();
+
+        private static List<IdRange> buildHexRanges() {
+            String hex = "0123456789abcdef";
+            List<IdRange> out = new ArrayList<>(16);
+            for (int i = 0; i < 16; i++) {
+                String from = i == 0 ? null : "0x" + hex.charAt(i) + "0";
+                String to = i == 15 ? null : "0x" + hex.charAt(i + 1) + "0";
+                out.add(new IdRange(from, to));
+            }
+            return out;
+        }
+    }
+
+    /** Subgraph vault row as returned by the page query; bound directly from the JSON stream. */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record VaultRow(String id, String symbol, String name) {
+        AssetDTO toDto() {
+            AssetDTO dto = new AssetDTO();
+            dto.vaultAddress = id;
+            dto.vaultSymbol  = symbol;
+            dto.vaultName    = name;
+            return dto;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,266 @@
+package com.defistat.service;
+
+import com.defistat.api.dto.AssetDTO;
+import com.defistat.config.AppProps;
+import com.defistat.model.AssetSnapshot;
+import com.defistat.model.BackfillJob;
+import com.defistat.repo.BackfillJobRepo;
+import com.defistat.web3.EulerClient;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Fills holes in asset_snapshots by reading vaults at historic (archive) blocks.
+ * - Every point of [from, to] (step seconds apart) is mapped to the last block at or before it (BlockTimeIndex).
+ * - Vault chunks of a point are read in parallel, bounded by a per-network semaphore shared by all jobs,
+ *   with a pause between points so live polling keeps most of the RPC capacity.
+ * - Rows are flagged as backfill and upserted by (network, vault, block) under a unique partial index, so
+ *   overlapping or repeated jobs never duplicate data and live-poller rows at the same block are left alone.
+ * - Progress is persisted after each point; RUNNING jobs are resumed on startup.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BackfillService {
+
+    private final EulerClient eulerClient;
+    private final VaultCatalogService vaultCatalog;
+    private final BlockTimeIndex blockTimeIndex;
+    private final BackfillJobRepo jobRepo;
+    private final MongoTemplate mongo;
+    private final AppProps props;
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final Map<String, Semaphore> permitsByNet = new ConcurrentHashMap<>();
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+    private final Set<String> pauseRequested = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Create and start a job. Empty {@code vaults} = all vaults of the catalog; {@code to} is capped at now.
+     */
+    public BackfillJob submit(String network, List<String> vaults, Instant from, Instant to, long stepSeconds) {
+        props.require(network);
+        if (stepSeconds <= 0) throw new IllegalArgumentException("stepSeconds must be > 0");
+        Instant end = to.isAfter(Instant.now()) ? Instant.now() : to;
+        if (from.isAfter(end)) throw new IllegalArgumentException("from must be before to");
+
+        Instant now = Instant.now();
+        BackfillJob job = jobRepo.save(BackfillJob.builder()
+                .network(network)
+                .vaults(vaults == null ? List.of() : vaults.stream().map(String::toLowerCase).distinct().toList())
+                .from(from)
+                .to(end)
+                .stepSeconds(stepSeconds)
+                .status(BackfillJob.Status.RUNNING)
+                .nextTs(from)
+                .pointsTotal((int) ((end.getEpochSecond() - from.getEpochSecond()) / stepSeconds + 1))
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+        launch(job);
+        return job;
+    }
+
+    /** Continue a paused or failed job from its last persisted point. */
+    public BackfillJob resume(String id) {
+        BackfillJob job = get(id);
+        if (job.getStatus() != BackfillJob.Status.DONE) {
+            job.setStatus(BackfillJob.Status.RUNNING);
+            job.setError(null);
+            job.setUpdatedAt(Instant.now());
+            launch(jobRepo.save(job));
+        }
+        return job;
+    }
+
+    /** Ask a running job to stop after the current point. */
+    public BackfillJob pause(String id) {
+        BackfillJob job = get(id);
+        if (running.contains(id)) {
+            pauseRequested.add(id);
+        } else if (job.getStatus() == BackfillJob.Status.RUNNING) {
+            job.setStatus(BackfillJob.Status.PAUSED);
+            job.setUpdatedAt(Instant.now());
+            jobRepo.save(job);
+        }
+        return job;
+    }
+
+    public BackfillJob get(String id) {
+        return jobRepo.findById(id).orElseThrow(() -> new IllegalArgumentException("Unknown backfill job: " + id));
+    }
+
+    public List<BackfillJob> list(String network) {
+        return jobRepo.findByNetworkOrderByCreatedAtDesc(network);
+    }
+
+    /** Jobs still marked RUNNING were interrupted by a restart. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterrupted() {
+        for (BackfillJob job : jobRepo.findByStatus(BackfillJob.Status.RUNNING)) {
+            log.info("[backfill] resuming job {} ({}) at {}", job.getId(), job.getNetwork(), job.getNextTs());
+            launch(job);
+        }
+    }
+
+    // ---------------------------- Internals ----------------------------
+
+    private void launch(BackfillJob job) {
+        if (!running.add(job.getId())) return;
+        Thread.ofVirtual().name("backfill-" + job.getId()).start(() -> {
+            try {
+                run(job);
+            } finally {
+                running.remove(job.getId());
+                pauseRequested.remove(job.getId());
+            }
+        });
+    }
+
+    private void run(BackfillJob job) {
+        String network = job.getNetwork();
+        AppProps.Network net = props.require(network);
+        Semaphore permits = permitsByNet.computeIfAbsent(network,
+                n -> new Semaphore(Math.max(1, net.getBackfill().getConcurrency())));
+        int chunk = Math.max(1, net.getMulticall().getChunkSize());
+        try {
+            Map<String, AssetDTO> labels = labels(network);
+            List<String> vaults = job.getVaults().isEmpty() ? new ArrayList<>(labels.keySet()) : job.getVaults();
+
+            for (Instant t = job.getNextTs(); !t.isAfter(job.getTo()); t = t.plusSeconds(job.getStepSeconds())) {
+                if (pauseRequested.remove(job.getId())) {
+                    job.setStatus(BackfillJob.Status.PAUSED);
+                    job.setUpdatedAt(Instant.now());
+                    jobRepo.save(job);
+                    log.info("[backfill] job {} paused at {}", job.getId(), t);
+                    return;
+                }
+
+                long block = blockTimeIndex.blockAt(network, t);
+                List<AssetSnapshot> rows = readAt(network, vaults, labels, BigInteger.valueOf(block), t, chunk, permits);
+                upsert(rows);
+
+                job.setNextTs(t.plusSeconds(job.getStepSeconds()));
+                job.setPointsDone(job.getPointsDone() + 1);
+                job.setRowsWritten(job.getRowsWritten() + rows.size());
+                job.setUpdatedAt(Instant.now());
+                jobRepo.save(job);
+                log.info("[backfill] job {} {} point {}/{} block {} rows {}",
+                        job.getId(), network, job.getPointsDone(), job.getPointsTotal(), block, rows.size());
+
+                Thread.sleep(Math.max(0, net.getBackfill().getPauseMs()));
+            }
+            job.setStatus(BackfillJob.Status.DONE);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            job.setStatus(BackfillJob.Status.PAUSED);
+        } catch (Exception e) {
+            log.error("[backfill] job {} failed at {}: {}", job.getId(), job.getNextTs(), e.getMessage());
+            job.setStatus(BackfillJob.Status.FAILED);
+            job.setError(e.getMessage());
+        }
+        job.setUpdatedAt(Instant.now());
+        jobRepo.save(job);
+    }
+
+    /** Catalog labels (symbol/name) keyed by lower-case vault address; empty if no catalog is available. */
+    private Map<String, AssetDTO> labels(String network) {
+        Map<String, AssetDTO> out = new HashMap<>();
+        try {
+            for (AssetDTO a : vaultCatalog.list(network)) {
+                out.put(a.vaultAddress.toLowerCase(), a);
+            }
+        } catch (Exception e) {
+            log.warn("[backfill] vault catalog unavailable for {}, rows will have no labels: {}", network, e.getMessage());
+        }
+        return out;
+    }
+
+    private List<AssetSnapshot> readAt(String network, List<String> vaults, Map<String, AssetDTO> labels,
+                                       BigInteger block, Instant ts, int chunk, Semaphore permits) {
+        List<AssetSnapshot> rows = Collections.synchronizedList(new ArrayList<>(vaults.size()));
+        try (ExecutorService exec = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < vaults.size(); i += chunk) {
+                List<String> part = vaults.subList(i, Math.min(i + chunk, vaults.size()));
+                exec.submit(() -> {
+                    permits.acquireUninterruptibly();
+                    try {
+                        Map<String, EulerClient.VaultSnapshot> snaps = eulerClient.fetchHistoricBatch(network, part, block);
+                        for (String vault : part) {
+                            var snap = snaps.get(vault);
+                            if (snap == null) {
+                                log.warn("[backfill] no snapshot for {} {} at block {}", network, vault, block);
+                                continue;
+                            }
+                            AssetDTO label = labels.get(vault);
+                            rows.add(AssetSnapshot.builder()
+                                    .network(network)
+                                    .vaultAddressOriginal(label != null ? label.vaultAddress : vault)
+                                    .vaultAddress(vault)
+                                    .ts(ts)
+                                    .tsTick(ts)
+                                    .blockNumber(block.longValue())
+                                    .backfill(true)
+                                    .borrowApyPct(snap.borrowApyPct)
+                                    .supplyApyPct(snap.supplyApyPct)
+                                    .utilizationPct(snap.utilizationPct)
+                                    .vaultSymbol(label != null ? label.vaultSymbol : null)
+                                    .vaultName(label != null ? label.vaultName : null)
+                                    .build());
+                        }
+                    } catch (Exception ex) {
+                        log.error("[backfill] chunk of {} vaults failed for {} at block {}: {}", part.size(), network, block, ex.getMessage());
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+        return new ArrayList<>(rows);
+    }
+
+    /**
+     * One unordered bulk write; replace-or-insert of backfill rows keyed by (network, vault, block).
+     * A duplicate-key error means an overlapping job inserted the same row first, which is the outcome we want.
+     */
+    private void upsert(List<AssetSnapshot> rows) {
+        if (rows.isEmpty()) return;
+        BulkOperations ops = mongo.bulkOps(BulkOperations.BulkMode.UNORDERED, AssetSnapshot.class);
+        for (AssetSnapshot row : rows) {
+            Query q = Query.query(Criteria.where("network").is(row.getNetwork())
+                    .and("vaultAddress").is(row.getVaultAddress())
+                    .and("blockNumber").is(row.getBlockNumber())
+                    .and("backfill").is(true));
+            ops.replaceOne(q, row, FindAndReplaceOptions.options().upsert());
+        }
+        try {
+            ops.execute();
+        } catch (BulkOperationException e) {
+            if (e.getErrors().stream().anyMatch(err -> err.getCode() != DUPLICATE_KEY)) throw e;
+            log.debug("[backfill] {} rows already inserted by an overlapping job", e.getErrors().size());
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.defistat.service;
+
+import com.defistat.model.BlockAnchor;
+import com.defistat.repo.BlockAnchorRepo;
+import com.defistat.web3.EulerClient;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Block ↔ timestamp index per network.
+ * - Sparse (block, ts) anchors are persisted in Mongo and kept warm in memory (loaded on first use).
+ * - blockAt(t) interpolates between the two anchors around t, aiming a little below t, and refines with
+ *   eth_getBlockByNumber until the block found is at most TOLERANCE_SEC older than t: one or two probes on
+ *   chains with steady block times. Only when interpolation keeps landing on the same side (e.g. around a chain
+ *   stall) the next probe bisects instead, so irregular stretches still converge; MAX_PROBES bounds the worst case.
+ * - Only the final bracket of a lookup becomes anchors; intermediate probes are not kept, so the index stays sparse.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BlockTimeIndex {
+
+    /** A block this close before t is good enough: snapshot points are minutes to hours apart. */
+    static final long TOLERANCE_SEC = 30;
+
+    /** Hard cap on RPC probes per lookup (bisection over 2^24 blocks); the best block found so far is used after it. */
+    static final int MAX_PROBES = 24;
+
+    /** Head block younger than this is trusted without asking for the latest block again. */
+    private static final long HEAD_TTL_SEC = 15;
+
+    private final EulerClient eulerClient;
+    private final BlockAnchorRepo repo;
+
+    private final Map<String, Anchors> byNetwork = new ConcurrentHashMap<>();
+
+    /**
+     * A block with timestamp <= t and at most TOLERANCE_SEC before t (the last block before t if blocks are further
+     * apart there); the head block for t in the future.
+     */
+    public long blockAt(String network, Instant t) {
+        Anchors a = anchors(network);
+        long target = t.getEpochSecond();
+
+        long[] head = a.head;
+        if (head == null || (target >= head[1] && Instant.now().getEpochSecond() - a.headCheckedAt > HEAD_TTL_SEC)) {
+            long headBlock = eulerClient.latestBlock(network).longValue();
+            head = new long[]{headBlock, timestampOf(network, headBlock)};
+            a.head = head;   // memory only: the head moves, persisting it would add an anchor per lookup
+            a.headCheckedAt = Instant.now().getEpochSecond();
+        }
+        if (target >= head[1]) return head[0];
+        if (a.byBlock.isEmpty() || a.byBlock.firstKey() > 0) remember(network, 0, timestampOf(network, 0));
+
+        Map.Entry<Long, Long> lo = a.byTs.floorEntry(target);             // highest known block with ts <= t
+        if (lo == null) return a.byBlock.firstKey();                      // before genesis timestamp
+        long loBlock = lo.getValue(), loTs = lo.getKey();
+        Map.Entry<Long, Long> hi = a.byBlock.higherEntry(loBlock);        // next known block, ts > t
+        long hiBlock = hi != null ? hi.getKey() : head[0];
+        long hiTs = hi != null ? hi.getValue() : head[1];
+
+        boolean loProbed = false, hiProbed = false;
+        int sameSide = 0;   // consecutive probes that moved the same end of the bracket
+        boolean lastLow = false;
+        for (int probes = 0; probes < MAX_PROBES && hiBlock > loBlock + 1 && target - loTs > TOLERANCE_SEC; probes++) {
+            long guess;
+            if (sameSide < 2) {
+                // aim at the middle of the tolerance window, so one good interpolation lands inside it
+                long aim = target - TOLERANCE_SEC / 2;
+                double frac = hiTs > loTs ? (double) (aim - loTs) / (hiTs - loTs) : 0.5;
+                guess = loBlock + Math.round(frac * (hiBlock - loBlock));
+            } else {
+                guess = (loBlock + hiBlock) >>> 1;
+            }
+            guess = Math.max(loBlock + 1, Math.min(hiBlock - 1, guess));
+            long ts = timestampOf(network, guess);
+            boolean low = ts <= target;
+            sameSide = probes > 0 && low == lastLow ? sameSide + 1 : 1;
+            lastLow = low;
+            if (low) {
+                loBlock = guess;
+                loTs = ts;
+                loProbed = true;
+            } else {
+                hiBlock = guess;
+                hiTs = ts;
+                hiProbed = true;
+            }
+        }
+        if (loProbed) remember(network, loBlock, loTs);
+        if (hiProbed) remember(network, hiBlock, hiTs);
+        return loBlock;
+    }
+
+    /** Timestamp (epoch seconds) of a block: from anchors, else one RPC call (not stored as an anchor). */
+    public long timestampOf(String network, long block) {
+        Long known = anchors(network).byBlock.get(block);
+        if (known != null) return known;
+        return eulerClient.blockTimestamp(network, BigInteger.valueOf(block));
+    }
+
+    // ---------------------------- Internals ----------------------------
+
+    /** Add an anchor in memory and in Mongo. */
+    private void remember(String network, long block, long ts) {
+        Anchors a = anchors(network);
+        if (a.byBlock.containsKey(block)) return;
+        a.put(block, ts);
+        try {
+            repo.save(BlockAnchor.of(network, block, ts));
+        } catch (Exception e) {
+            // memory still has it; it will be re-fetched after a restart
+            log.warn("[block-index] failed to persist anchor {}@{}: {}", network, block, e.getMessage());
+        }
+    }
+
+    private Anchors anchors(String network) {
+        return byNetwork.computeIfAbsent(network, n -> {
+            Anchors a = new Anchors();
+            for (BlockAnchor b : repo.findByNetworkOrderByBlockAsc(n)) a.put(b.getBlock(), b.getTs());
+            log.info("[block-index] loaded {} anchors for {}", a.byBlock.size(), n);
+            return a;
+        });
+    }
+
+    /** Anchors of one network, indexed both ways (timestamps are non-decreasing in block order). */
+    private static final class Anchors {
+        final ConcurrentSkipListMap<Long, Long> byBlock = new ConcurrentSkipListMap<>(); // block -> ts
+        final ConcurrentSkipListMap<Long, Long> byTs = new ConcurrentSkipListMap<>();    // ts -> highest known block
+        /** Latest known head as {block, ts}. */
+        volatile long[] head;
+        volatile long headCheckedAt;
+
+        void put(long block, long ts) {
+            byBlock.put(block, ts);
+            byTs.merge(ts, block, Math::max);
+        }
+    }
+}
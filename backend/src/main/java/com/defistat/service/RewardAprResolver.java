@@ -1,12 +1,11 @@
 // com.defistat.rewards.RewardAprResolver.java
 package com.defistat.service;
 
-import com.defistat.model.RewardOpportunityDocument;
-import com.defistat.repo.RewardOpportunityRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Locale;
 
 /**
@@ -25,7 +24,7 @@ import java.util.Locale;
 @RequiredArgsConstructor
 public class RewardAprResolver {
 
-    private final RewardOpportunityRepository repo;
+    private final RewardTimelineCache timelines;
 
     /**
      * @param network      Network name (e.g., "avalanche", "base")
@@ -37,41 +36,65 @@ public class RewardAprResolver {
      */
     public double resolve(String network, String vault, String role, Instant atTs, Double userProvided) {
         final String net = network.toLowerCase(Locale.ROOT);
+        // Cached history of (net, vault, role); O(log n) per lookup once loaded.
+        RewardTimelineCache.Timeline timeline = timelines.get(net, vault.toLowerCase(), role);
 
-        // Find the earliest record for (net, vault, role).
         // If there's no record at all -> PRIOR to first record by definition -> use userProvided or 0.
-        var earliestOpt = repo.findTopByNetworkAndVaultAddressAndRoleOrderByTsAsc(net, vault.toLowerCase(), role);
-        if (earliestOpt.isEmpty()) {
+        if (timeline.isEmpty()) {
             return userProvided != null ? userProvided : 0.0;
         }
 
         // If the requested time is BEFORE the earliest record ts -> use userProvided or 0.
-        var earliest = earliestOpt.get();
-        if (atTs != null && atTs.isBefore(earliest.getTs())) {
+        if (atTs != null && atTs.toEpochMilli() < timeline.firstMillis()) {
             return userProvided != null ? userProvided : 0.0;
         }
 
         // From this point on (on/after earliest record): userProvided MUST be ignored.
-        // We always resolve from DB at or before T; if not LIVE -> 0.
-        var asOfOpt = repo.findTopByNetworkAndVaultAddressAndRoleAndTsLessThanEqualOrderByTsDesc(net, vault.toLowerCase(), role,
-                atTs != null ? atTs : Instant.now());
+        // We always resolve the latest record at or before T; if not LIVE -> 0.
+        int asOf = timeline.floorIndex((atTs != null ? atTs : Instant.now()).toEpochMilli());
 
-        // Defensive: if for some reason there is no record <= T (e.g., atTs way in the past but not before earliest),
+        // Defensive: if for some reason there is no record <= T (e.g. atTs == null and the first record is in the future),
         // we still treat it as "no active campaign as of T" -> 0.
-        if (asOfOpt.isEmpty()) {
+        if (asOf < 0) {
             return 0.0;
         }
-
-        var doc = asOfOpt.get();
-        return aprIfLiveElseZero(doc);
+        return timeline.aprAt(asOf);
     }
 
-    /** Returns APR if campaign is LIVE in this record; otherwise 0. */
-    private double aprIfLiveElseZero(RewardOpportunityDocument doc) {
-        final String status = doc.getStatus() == null ? "" : doc.getStatus();
-        final boolean live = "LIVE".equalsIgnoreCase(status);
-        if (!live) return 0.0;
-        Double apr = doc.getRewardApyPct();
-        return apr == null ? 0.0 : apr;
+    /**
+     * Batch form of {@link #resolve} for a series: one timeline lookup (a single query on a cache miss),
+     * then one forward merge pass over the instants. Same rules as resolve, per instant.
+     * @param sortedInstants snapshot timestamps, ascending (out-of-order entries are still answered correctly)
+     * @return resolved APR (%) per instant, same order
+     */
+    public double[] resolveMany(String network, String vault, String role, Instant[] sortedInstants, Double userProvided) {
+        final String net = network.toLowerCase(Locale.ROOT);
+        RewardTimelineCache.Timeline timeline = timelines.get(net, vault.toLowerCase(), role);
+        final double beforeFirst = userProvided != null ? userProvided : 0.0;
+        final double[] out = new double[sortedInstants.length];
+
+        if (timeline.isEmpty()) {
+            Arrays.fill(out, beforeFirst);
+            return out;
+        }
+
+        int asOf = -1;
+        long prev = Long.MIN_VALUE;
+        for (int i = 0; i < sortedInstants.length; i++) {
+            Instant atTs = sortedInstants[i];
+            if (atTs != null && atTs.toEpochMilli() < timeline.firstMillis()) {
+                out[i] = beforeFirst;
+                continue;
+            }
+            long t = (atTs != null ? atTs : Instant.now()).toEpochMilli();
+            if (t < prev) {
+                asOf = timeline.floorIndex(t); // not sorted here: seek instead of merging
+            } else {
+                while (asOf + 1 < timeline.size() && timeline.millisAt(asOf + 1) <= t) asOf++;
+            }
+            prev = t;
+            out[i] = asOf < 0 ? 0.0 : timeline.aprAt(asOf);
+        }
+        return out;
     }
-}
\ No newline at end of file
+}
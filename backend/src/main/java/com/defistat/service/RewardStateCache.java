@@ -0,0 +1,179 @@
+package com.defistat.service;
+
+import com.defistat.model.RewardOpportunityDocument;
+import com.mongodb.client.AggregateIterable;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Warm in-memory view of the latest stored reward state, used by ingest change detection.
+ * - Loaded once at startup from reward_opportunity (a network missing at startup is loaded on first use).
+ * - Kept current by the ingest after every successful write, so steady-state ingest reads nothing from Mongo.
+ * - verify() compares the map with the collection and can rebuild it on demand.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RewardStateCache {
+
+    private final MongoTemplate mongo;
+
+    private final Map<String, NetworkState> byNetwork = new ConcurrentHashMap<>();
+
+    /** Last stored state of one reward document (ts truncated to Mongo's millisecond precision). */
+    public record State(String id, String opportunityId, String vaultAddress, String role,
+                        Instant ts, String status, Double rewardApyPct) {
+
+        static State of(RewardOpportunityDocument d) {
+            return new State(d.getId(), d.getOpportunityId(), d.getVaultAddress(), d.getRole(),
+                    millis(d.getTs()), d.getStatus(), d.getRewardApyPct());
+        }
+
+        static State of(Document d) {
+            Date ts = d.getDate("ts");
+            return new State(d.get("_id") == null ? null : d.get("_id").toString(),
+                    d.getString("opportunityId"), d.getString("vaultAddress"), d.getString("role"),
+                    ts == null ? null : ts.toInstant(), d.getString("status"),
+                    d.get("rewardApyPct") instanceof Number n ? n.doubleValue() : null);
+        }
+    }
+
+    /** Result of a consistency check: entries that differ between memory and Mongo. */
+    public record Consistency(String network, int cachedOpportunities, int storedOpportunities,
+                              int mismatched, boolean rebuilt) {}
+
+    /** Latest record per Merkl opportunity, and per (vault, role) as fallback for unseen opportunities. */
+    private static final class NetworkState {
+        final Map<String, State> byOpportunity = new ConcurrentHashMap<>();
+        final Map<String, State> byVaultRole = new ConcurrentHashMap<>();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            Map<String, NetworkState> loaded = load(null);
+            loaded.forEach(byNetwork::putIfAbsent);
+            log.info("[RewardState] warmed {} networks, {} opportunities", loaded.size(),
+                    loaded.values().stream().mapToInt(s -> s.byOpportunity.size()).sum());
+        } catch (Exception e) {
+            log.warn("[RewardState] warm-up failed, networks load on first use: {}", e.getMessage());
+        }
+    }
+
+    public State latest(String network, String opportunityId) {
+        return opportunityId == null ? null : state(network).byOpportunity.get(opportunityId);
+    }
+
+    public State latestForVaultRole(String network, String vaultAddress, String role) {
+        return state(network).byVaultRole.get(vaultRoleKey(vaultAddress, role));
+    }
+
+    /** Record documents that were just written; older states never replace newer ones. */
+    public synchronized void apply(String network, Collection<RewardOpportunityDocument> written) {
+        NetworkState s = state(network);
+        for (RewardOpportunityDocument d : written) {
+            State st = State.of(d);
+            if (st.opportunityId() != null) s.byOpportunity.merge(st.opportunityId(), st, RewardStateCache::newer);
+            s.byVaultRole.merge(vaultRoleKey(st.vaultAddress(), st.role()), st, RewardStateCache::newer);
+        }
+    }
+
+    /** Drop the in-memory state of a network and reload it from Mongo. */
+    public synchronized void rebuild(String network) {
+        byNetwork.put(network, load(network).getOrDefault(network, new NetworkState()));
+        log.info("[RewardState] rebuilt {}: {} opportunities", network, byNetwork.get(network).byOpportunity.size());
+    }
+
+    /**
+     * Compare the in-memory state of a network with Mongo; with repair=true a divergent map is replaced.
+     */
+    public synchronized Consistency verify(String network, boolean repair) {
+        NetworkState cached = state(network);
+        NetworkState stored = load(network).getOrDefault(network, new NetworkState());
+        int mismatched = diff(cached.byOpportunity, stored.byOpportunity) + diff(cached.byVaultRole, stored.byVaultRole);
+        boolean rebuilt = repair && mismatched > 0;
+        if (rebuilt) byNetwork.put(network, stored);
+        if (mismatched > 0) {
+            log.warn("[RewardState] {} entries of {} differ from Mongo (rebuilt={})", mismatched, network, rebuilt);
+        }
+        return new Consistency(network, cached.byOpportunity.size(), stored.byOpportunity.size(), mismatched, rebuilt);
+    }
+
+    // ---------------------------- Internals ----------------------------
+
+    private NetworkState state(String network) {
+        return byNetwork.computeIfAbsent(network, n -> load(n).getOrDefault(n, new NetworkState()));
+    }
+
+    /** Two streamed aggregations (newest first, $first per key); network == null loads every network. */
+    private Map<String, NetworkState> load(String network) {
+        Map<String, NetworkState> out = new HashMap<>();
+        Document scope = network == null ? new Document() : new Document("network", network);
+
+        for (Document d : latestPer(new Document(scope).append("source", "merkl"),
+                new Document("n", "$network").append("o", "$opportunityId"))) {
+            State s = State.of(d);
+            if (d.getString("network") == null || s.opportunityId() == null) continue;
+            out.computeIfAbsent(d.getString("network"), k -> new NetworkState()).byOpportunity.put(s.opportunityId(), s);
+        }
+        for (Document d : latestPer(scope,
+                new Document("n", "$network").append("v", "$vaultAddress").append("r", "$role"))) {
+            State s = State.of(d);
+            if (d.getString("network") == null) continue;
+            out.computeIfAbsent(d.getString("network"), k -> new NetworkState())
+                    .byVaultRole.put(vaultRoleKey(s.vaultAddress(), s.role()), s);
+        }
+        return out;
+    }
+
+    private AggregateIterable<Document> latestPer(Document match, Document groupKey) {
+        Document fields = new Document("network", 1).append("opportunityId", 1).append("vaultAddress", 1)
+                .append("role", 1).append("ts", 1).append("status", 1).append("rewardApyPct", 1);
+        return mongo.getCollection(mongo.getCollectionName(RewardOpportunityDocument.class))
+                .aggregate(List.of(
+                        new Document("$match", match),
+                        new Document("$sort", new Document("ts", -1)),
+                        new Document("$project", fields),
+                        new Document("$group", new Document("_id", groupKey).append("doc", new Document("$first", "$$ROOT"))),
+                        new Document("$replaceRoot", new Document("newRoot", "$doc"))))
+                .allowDiskUse(true);
+    }
+
+    private static int diff(Map<String, State> cached, Map<String, State> stored) {
+        int n = 0;
+        for (Map.Entry<String, State> e : stored.entrySet()) {
+            if (!e.getValue().equals(cached.get(e.getKey()))) n++;
+        }
+        for (String k : cached.keySet()) {
+            if (!stored.containsKey(k)) n++;
+        }
+        return n;
+    }
+
+    private static State newer(State old, State cur) {
+        if (old.ts() == null) return cur;
+        return cur.ts() == null || cur.ts().isBefore(old.ts()) ? old : cur;
+    }
+
+    private static Instant millis(Instant t) {
+        return t == null ? null : t.truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    static String vaultRoleKey(String vaultAddress, String role) {
+        return vaultAddress + "|" + role;
+    }
+}
@@ -0,0 +1,199 @@
+package com.defistat.service;
+
+import com.defistat.model.RewardOpportunityDocument;
+import com.defistat.repo.RewardOpportunityRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory reward history per (network, vault, role), as used by RewardAprResolver.
+ * - A timeline is loaded with one query on first use and answers as-of lookups by binary search.
+ * - At most app.rewards.timelineCacheSize timelines are kept (least recently used are evicted).
+ * - Ingest writes extend a cached timeline when they are newer than its last point, otherwise invalidate it.
+ * - A load that a write overlapped is returned but not cached, since its query may predate that write.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RewardTimelineCache {
+
+    private final RewardOpportunityRepository repo;
+
+    @Value("${app.rewards.timelineCacheSize:4096}")
+    private int maxTimelines;
+
+    private record Key(String network, String vault, String role) {}
+
+    /** Access-ordered map = LRU; guarded by its own monitor. */
+    private final Map<Key, Timeline> timelines = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Timeline> eldest) {
+            return size() > maxTimelines;
+        }
+    };
+
+    /** Loads in flight for a key: how many, and a generation every write to the key bumps. */
+    private static final class Load {
+        int loaders;
+        long generation;
+    }
+
+    /** Keys being loaded from Mongo; guarded by the monitor of {@link #timelines}. */
+    private final Map<Key, Load> loads = new HashMap<>();
+
+    /**
+     * Immutable reward history: record timestamps (epoch millis, ascending) and the APR each record
+     * yields (stored APR when LIVE, else 0). Records sharing a ts keep their stored order; the last one wins.
+     */
+    public static final class Timeline {
+        static final Timeline EMPTY = new Timeline(new long[0], new double[0]);
+
+        private final long[] ts;
+        private final double[] apr;
+
+        private Timeline(long[] ts, double[] apr) {
+            this.ts = ts;
+            this.apr = apr;
+        }
+
+        public boolean isEmpty() {
+            return ts.length == 0;
+        }
+
+        /** Timestamp of the earliest record; only valid when not empty. */
+        public long firstMillis() {
+            return ts[0];
+        }
+
+        /** Index of the last record with ts <= t, or -1 when t is before the first record. */
+        public int floorIndex(long t) {
+            int lo = 0, hi = ts.length - 1, found = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (ts[mid] <= t) {
+                    found = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return found;
+        }
+
+        public double aprAt(int index) {
+            return apr[index];
+        }
+
+        public int size() {
+            return ts.length;
+        }
+
+        public long millisAt(int index) {
+            return ts[index];
+        }
+
+        static Timeline of(List<RewardOpportunityDocument> ascending) {
+            long[] ts = new long[ascending.size()];
+            double[] apr = new double[ascending.size()];
+            for (int i = 0; i < ts.length; i++) {
+                RewardOpportunityDocument d = ascending.get(i);
+                ts[i] = d.getTs().toEpochMilli();
+                apr[i] = aprIfLiveElseZero(d);
+            }
+            return new Timeline(ts, apr);
+        }
+
+        /** Copy with one more point; caller guarantees it is not older than the last point. */
+        Timeline append(long t, double a) {
+            long[] nts = Arrays.copyOf(ts, ts.length + 1);
+            double[] napr = Arrays.copyOf(apr, apr.length + 1);
+            nts[ts.length] = t;
+            napr[apr.length] = a;
+            return new Timeline(nts, napr);
+        }
+    }
+
+    /** Cached timeline for (network, vault, role); loaded from Mongo on a miss. Arguments must be normalized. */
+    public Timeline get(String network, String vault, String role) {
+        Key key = new Key(network, vault, role);
+        Load load;
+        long generation;
+        synchronized (timelines) {
+            Timeline t = timelines.get(key);
+            if (t != null) return t;
+            load = loads.computeIfAbsent(key, k -> new Load());
+            load.loaders++;
+            generation = load.generation;
+        }
+        Timeline loaded;
+        try {
+            List<RewardOpportunityDocument> docs = repo.findTimeline(network, vault, role);
+            loaded = docs.isEmpty() ? Timeline.EMPTY : Timeline.of(docs);
+        } finally {
+            synchronized (timelines) {
+                if (--load.loaders == 0) loads.remove(key);
+            }
+        }
+        synchronized (timelines) {
+            // a write during the query may be missing from it: serve this result once, leave the key uncached
+            if (load.generation != generation) return loaded;
+            // another loader may have cached the key meanwhile: keep what is there
+            Timeline raced = timelines.putIfAbsent(key, loaded);
+            return raced != null ? raced : loaded;
+        }
+    }
+
+    /** Called after reward documents were written: extend timelines in place where possible, else drop them. */
+    public void onWritten(Collection<RewardOpportunityDocument> written) {
+        synchronized (timelines) {
+            for (RewardOpportunityDocument d : written) {
+                Key key = new Key(d.getNetwork(), d.getVaultAddress(), d.getRole());
+                bumpLoad(key);
+                Timeline t = timelines.get(key);
+                if (t == null) continue;
+                long ts = d.getTs().toEpochMilli();
+                if (t.isEmpty() || ts > t.millisAt(t.size() - 1)) {
+                    timelines.put(key, t.append(ts, aprIfLiveElseZero(d)));
+                } else {
+                    // same-ts update or out-of-order insert: rebuild from Mongo on next use
+                    timelines.remove(key);
+                }
+            }
+        }
+    }
+
+    /** Drop every cached timeline touched by these documents (e.g. after a partially failed write). */
+    public void invalidate(Collection<RewardOpportunityDocument> touched) {
+        synchronized (timelines) {
+            for (RewardOpportunityDocument d : touched) {
+                Key key = new Key(d.getNetwork(), d.getVaultAddress(), d.getRole());
+                bumpLoad(key);
+                timelines.remove(key);
+            }
+        }
+    }
+
+    /** Mark an in-flight load of the key as overlapped by a write; caller holds the monitor of timelines. */
+    private void bumpLoad(Key key) {
+        Load load = loads.get(key);
+        if (load != null) load.generation++;
+    }
+
+    /** Returns APR if campaign is LIVE in this record; otherwise 0. */
+    private static double aprIfLiveElseZero(RewardOpportunityDocument doc) {
+        final String status = doc.getStatus() == null ? "" : doc.getStatus();
+        final boolean live = "LIVE".equalsIgnoreCase(status);
+        if (!live) return 0.0;
+        Double apr = doc.getRewardApyPct();
+        return apr == null ? 0.0 : apr;
+    }
+}
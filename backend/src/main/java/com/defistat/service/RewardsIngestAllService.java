@@ -3,24 +3,35 @@ package com.defistat.service;
 
 import com.defistat.config.AppProps;
 import com.defistat.model.RewardOpportunityDocument;
-import com.defistat.repo.RewardOpportunityRepository;
 import com.defistat.web3.MerklClient;
 import com.defistat.web3.dto.merkl.MerklOpportunity;
 import lombok.RequiredArgsConstructor;
+import com.mongodb.bulk.BulkWriteResult;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 
 /**
  * Pulls all Merkl opportunities for a chain/protocol and persists adapted documents.
  * Writes a NEW document ONLY when 'status' or 'rewardApyPct' actually changed.
  * If the last record has the same 'ts' as the new one, we update it in-place (prevent duplicates for the same timestamp).
+ * Latest state comes from the in-memory RewardStateCache and all writes go out as a single unordered bulk write.
  */
 @Service
 @RequiredArgsConstructor
@@ -30,80 +41,149 @@ public class RewardsIngestAllService {
     private static final double EPS_APR = 1e-6; // minimal apr change to treat as "changed" (to filter out floating noise)
 
     private final MerklClient merklClient;
-    private final RewardOpportunityRepository repo;
+    private final MongoTemplate mongo;
+    private final RewardStateCache stateCache;
+    private final RewardTimelineCache timelineCache;
     private final AppProps appProps;
 
     /**
      * Ingest all opportunities for given network/protocol from Merkl.
+     * Change detection runs against the warm in-memory state (no Mongo reads), and all inserts / same-ts updates
+     * go out as one unordered bulk write whose outcome is then applied to that state.
+     * Merkl page validators are committed only when every opportunity was staged and the write fully succeeded;
+     * otherwise the next run re-reads those pages instead of getting 304 for data that was never stored.
      * Returns number of saved/updated documents.
      */
     public int ingestAll(String network, String protocol) {
         final String net = normalize(network);
-        List<MerklOpportunity> list = merklClient.findAll(appProps.require(net).getChainId(), protocol);
+        IngestBatch batch = new IngestBatch(net);
 
-        int changedCount = 0;
-        for (MerklOpportunity o : list) {
+        // opportunities are decoded from the response stream and staged one by one
+        MerklClient.Fetch fetch = merklClient.forEach(appProps.require(net).getChainId(), protocol, o -> {
             try {
                 RewardOpportunityDocument incoming = adapt(net, protocol, o);
-                if (incoming == null) continue;
-
-                // 1) If there is already a record with the SAME (source, opportunityId, ts), update it (dedup on same ts)
-                Optional<RewardOpportunityDocument> sameTs = repo.findBySourceAndOpportunityIdAndTs(
-                        incoming.getSource(), incoming.getOpportunityId(), incoming.getTs());
-
-                if (sameTs.isPresent()) {
-                    RewardOpportunityDocument cur = sameTs.get();
-                    // overwrite mutable fields (no new version is created)
-                    overwriteMutableFields(cur, incoming);
-                    repo.save(cur);
-                    log.debug("[MerklIngest] Updated same-ts record (no version bump) id={} ts={}", cur.getOpportunityId(), cur.getTs());
-                    changedCount++;
-                    continue;
-                }
-
-                // 2) Otherwise get the latest record for same opportunity (prefer source+opportunityId; fallback to net+vault+role)
-                RewardOpportunityDocument last = repo
-                        .findTopBySourceAndOpportunityIdOrderByTsDesc(incoming.getSource(), incoming.getOpportunityId())
-                        .orElseGet(() -> repo
-                                .findTopByNetworkAndVaultAddressAndRoleOrderByTsDesc(
-                                        incoming.getNetwork(), incoming.getVaultAddress(), incoming.getRole()
-                                ).orElse(null));
-
-                if (last == null) {
-                    // First ever record for this opportunity → create
-                    repo.save(incoming);
-                    log.info("[MerklIngest] New reward entry: vault={} role={} status={} apr={}",
-                            incoming.getVaultAddress(), incoming.getRole(), incoming.getStatus(), incoming.getRewardApyPct());
-                    changedCount++;
-                } else {
-                    // 3) Compare by status or APR
-                    boolean statusChanged = !Objects.equals(safe(last.getStatus()), safe(incoming.getStatus()));
-                    double aprPrev = last.getRewardApyPct() == null ? 0.0 : last.getRewardApyPct();
-                    double aprNew  = incoming.getRewardApyPct() == null ? 0.0 : incoming.getRewardApyPct();
-                    boolean aprChanged = Math.abs(aprPrev - aprNew) > EPS_APR;
-
-                    if (statusChanged || aprChanged) {
-                        // Create NEW document (versioning-by-change)
-                        repo.save(incoming);
-                        log.info("[MerklIngest] Change detected → new version. vault={} role={} status {}→{} apr {}→{}",
-                                incoming.getVaultAddress(), incoming.getRole(),
-                                safe(last.getStatus()), safe(incoming.getStatus()),
-                                aprPrev, aprNew);
-                        changedCount++;
-                    } else {
-                        // No semantic change → do nothing (keep history clean)
-                        log.debug("[MerklIngest] No change for vault={} role={} (status={}, apr={})",
-                                incoming.getVaultAddress(), incoming.getRole(), incoming.getStatus(), aprNew);
-                    }
-                }
+                if (incoming != null) batch.stage(incoming);
             } catch (Exception e) {
+                batch.failed = true;
                 log.warn("Failed to ingest opportunity id={} : {}", o != null ? o.getId() : "null", e.getMessage());
             }
-        }
+        });
+
+        int changedCount = batch.flush();
+        if (!batch.failed) fetch.commit();
         log.info("Merkl ingest finished: {} saved/updated for {}/{}", changedCount, network, protocol);
         return changedCount;
     }
 
+    /**
+     * Writes of one ingest run, decided in memory against the cached latest state plus what this run staged.
+     * Same-ts repeats within the run mutate the staged document instead of adding a write.
+     */
+    private final class IngestBatch {
+        final String network;
+        final List<RewardOpportunityDocument> inserts = new ArrayList<>();
+        final Map<String, RewardOpportunityDocument> pendingInsert = new HashMap<>();
+        final Map<String, RewardOpportunityDocument> updates = new LinkedHashMap<>();
+        final Map<String, RewardStateCache.State> stagedByOpportunity = new HashMap<>();
+        final Map<String, RewardStateCache.State> stagedByVaultRole = new HashMap<>();
+        /** Some opportunity or write of this run was lost; its pages must be fetched again. */
+        boolean failed;
+
+        IngestBatch(String network) {
+            this.network = network;
+        }
+
+        void stage(RewardOpportunityDocument incoming) {
+            incoming.setTs(incoming.getTs().truncatedTo(ChronoUnit.MILLIS)); // the precision Mongo keeps
+            String vaultRole = RewardStateCache.vaultRoleKey(incoming.getVaultAddress(), incoming.getRole());
+            // Latest record for same opportunity (prefer source+opportunityId; fallback to net+vault+role)
+            RewardStateCache.State last = stagedByOpportunity.get(incoming.getOpportunityId());
+            if (last == null) last = stateCache.latest(network, incoming.getOpportunityId());
+            if (last == null) last = stagedByVaultRole.get(vaultRole);
+            if (last == null) last = stateCache.latestForVaultRole(network, incoming.getVaultAddress(), incoming.getRole());
+
+            if (last != null
+                    && Objects.equals(last.opportunityId(), incoming.getOpportunityId())
+                    && incoming.getTs().equals(last.ts())) {
+                // 1) Same (source, opportunityId, ts): update in place (dedup on same ts, no version bump)
+                RewardOpportunityDocument target = pendingInsert.get(incoming.getOpportunityId());
+                if (target != null && target.getTs().equals(incoming.getTs())) {
+                    overwriteMutableFields(target, incoming);
+                } else {
+                    // full replace of the stored record: incoming carries the same identity (source, opportunityId, ts)
+                    target = incoming.setId(last.id());
+                    updates.put(last.id(), target);
+                }
+                stagedByOpportunity.put(incoming.getOpportunityId(), RewardStateCache.State.of(target));
+                log.debug("[MerklIngest] Updated same-ts record (no version bump) id={} ts={}", incoming.getOpportunityId(), incoming.getTs());
+                return;
+            }
+            if (last != null && Objects.equals(last.opportunityId(), incoming.getOpportunityId())
+                    && incoming.getTs().isBefore(last.ts())) {
+                // older than what we already have: history is append-only
+                log.debug("[MerklIngest] Stale record ignored id={} ts={} < {}", incoming.getOpportunityId(), incoming.getTs(), last.ts());
+                return;
+            }
+
+            if (last == null) {
+                // First ever record for this opportunity → create
+                log.info("[MerklIngest] New reward entry: vault={} role={} status={} apr={}",
+                        incoming.getVaultAddress(), incoming.getRole(), incoming.getStatus(), incoming.getRewardApyPct());
+            } else {
+                // 2) Compare by status or APR
+                boolean statusChanged = !Objects.equals(safe(last.status()), safe(incoming.getStatus()));
+                double aprPrev = last.rewardApyPct() == null ? 0.0 : last.rewardApyPct();
+                double aprNew  = incoming.getRewardApyPct() == null ? 0.0 : incoming.getRewardApyPct();
+                boolean aprChanged = Math.abs(aprPrev - aprNew) > EPS_APR;
+
+                if (!statusChanged && !aprChanged) {
+                    // No semantic change → do nothing (keep history clean)
+                    log.debug("[MerklIngest] No change for vault={} role={} (status={}, apr={})",
+                            incoming.getVaultAddress(), incoming.getRole(), incoming.getStatus(), aprNew);
+                    return;
+                }
+                log.info("[MerklIngest] Change detected → new version. vault={} role={} status {}→{} apr {}→{}",
+                        incoming.getVaultAddress(), incoming.getRole(),
+                        safe(last.status()), safe(incoming.getStatus()),
+                        aprPrev, aprNew);
+            }
+            // Create NEW document (versioning-by-change); the id is assigned here so the cached state can address it
+            incoming.setId(new ObjectId().toHexString());
+            inserts.add(incoming);
+            pendingInsert.put(incoming.getOpportunityId(), incoming);
+            RewardStateCache.State state = RewardStateCache.State.of(incoming);
+            stagedByOpportunity.put(incoming.getOpportunityId(), state);
+            stagedByVaultRole.put(vaultRole, state);
+        }
+
+        /** One unordered bulk write; returns number of inserted + matched documents. */
+        int flush() {
+            int staged = inserts.size() + updates.size();
+            if (staged == 0) return 0;
+            BulkOperations ops = mongo.bulkOps(BulkOperations.BulkMode.UNORDERED, RewardOpportunityDocument.class);
+            if (!inserts.isEmpty()) ops.insert(inserts);
+            updates.forEach((id, doc) -> ops.replaceOne(Query.query(Criteria.where("_id").is(id)), doc));
+            try {
+                BulkWriteResult res = ops.execute();
+                stateCache.apply(network, inserts);
+                stateCache.apply(network, updates.values());
+                timelineCache.onWritten(inserts);
+                timelineCache.onWritten(updates.values());
+                return res.getInsertedCount() + res.getMatchedCount();
+            } catch (BulkOperationException e) {
+                failed = true;
+                // unordered: the rest of the batch is applied; report what failed (e.g. duplicate ts)
+                log.warn("[MerklIngest] {} of {} writes failed for {}: {}", e.getErrors().size(), staged, network,
+                        e.getErrors().isEmpty() ? "" : e.getErrors().get(0).getMessage());
+                // partial outcome: re-read the stored state rather than guessing which writes landed
+                stateCache.rebuild(network);
+                timelineCache.invalidate(inserts);
+                timelineCache.invalidate(updates.values());
+                return e.getResult().getInsertedCount() + e.getResult().getMatchedCount();
+            }
+        }
+    }
+
     /**
      * Map raw Merkl opportunity to our storage document.
      * Returns null when essential fields are missing.
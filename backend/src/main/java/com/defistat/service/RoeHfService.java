@@ -180,26 +180,20 @@ public class RoeHfService {
         final Map<Instant, AssetSnapshot> colByTs = new HashMap<>();
         for (AssetSnapshot s : colSeries) if (s.getTs() != null) colByTs.put(s.getTs(), s);
 
-        final List<RoeHFHistoryPoint> out = new ArrayList<>();
+        final List<AssetSnapshot> cols = new ArrayList<>();
+        final List<AssetSnapshot> bors = new ArrayList<>();
         for (AssetSnapshot b : borSeries) {
             final Instant k = b.getTs();
             if (k == null) continue;
             final AssetSnapshot c = colByTs.get(k);
             if (c != null) {
-                // Resolve rewards at each side's snapshot time
-                final Instant tCol = prefer(c.getTsTick(), c.getTs());
-                final Instant tBor = prefer(b.getTsTick(), b.getTs());
-                final double colRewardsResolved = rewardAprResolver.resolve(network, colAddr, "collateral", tCol, userColReward);
-                final double borRewardsResolved = rewardAprResolver.resolve(network, borAddr, "borrow",     tBor, userBorReward);
-
-                out.add(buildResponse(network, colAddr, borAddr, L, c, b,
-                        colRewardsResolved, borRewardsResolved,
-                        pCol, pBor, ltPct,
-                        "Series item (joined by batch ts; rewards resolved by ts)")
-                );
+                cols.add(c);
+                bors.add(b);
             }
         }
-        return out;
+        return buildSeries(network, colAddr, borAddr, L, cols, bors,
+                userColReward, userBorReward, pCol, pBor, ltPct,
+                "Series item (joined by batch ts; rewards resolved by ts)");
     }
 
     /**
@@ -212,7 +206,8 @@ public class RoeHfService {
             Double userColReward, Double userBorReward,
             double pCol, double pBor, double ltPct
     ) {
-        final List<RoeHFHistoryPoint> out = new ArrayList<>();
+        final List<AssetSnapshot> cols = new ArrayList<>();
+        final List<AssetSnapshot> bors = new ArrayList<>();
         int j = 0;
         for (AssetSnapshot c : colSeries) {
             final Instant ct = prefer(c.getTsTick(), c.getTs());
@@ -238,19 +233,41 @@ public class RoeHfService {
             }
 
             if (best != null && bestDiff <= tolSec) {
-                // Resolve rewards at each side's snapshot time
-                final Instant tCol = ct;
-                final Instant tBor = prefer(best.getTsTick(), best.getTs());
-                final double colRewardsResolved = rewardAprResolver.resolve(network, colAddr, "collateral", tCol, userColReward);
-                final double borRewardsResolved = rewardAprResolver.resolve(network, borAddr, "borrow",     tBor, userBorReward);
-
-                out.add(buildResponse(network, colAddr, borAddr, L, c, best,
-                        colRewardsResolved, borRewardsResolved,
-                        pCol, pBor, ltPct,
-                        "Series item (matched by tsTick ± " + tolSec + "s; rewards resolved by ts)")
-                );
+                cols.add(c);
+                bors.add(best);
             }
         }
+        return buildSeries(network, colAddr, borAddr, L, cols, bors,
+                userColReward, userBorReward, pCol, pBor, ltPct,
+                "Series item (matched by tsTick ± " + tolSec + "s; rewards resolved by ts)");
+    }
+
+    /**
+     * Build responses for joined (collateral, borrow) pairs.
+     * Rewards APR are resolved at each side's snapshot time, one batch per side.
+     */
+    private List<RoeHFHistoryPoint> buildSeries(
+            String network, String colAddr, String borAddr, double L,
+            List<AssetSnapshot> cols, List<AssetSnapshot> bors,
+            Double userColReward, Double userBorReward,
+            double pCol, double pBor, double ltPct, String note
+    ) {
+        final int n = cols.size();
+        final Instant[] tCol = new Instant[n];
+        final Instant[] tBor = new Instant[n];
+        for (int i = 0; i < n; i++) {
+            tCol[i] = prefer(cols.get(i).getTsTick(), cols.get(i).getTs());
+            tBor[i] = prefer(bors.get(i).getTsTick(), bors.get(i).getTs());
+        }
+        final double[] colRewardsResolved = rewardAprResolver.resolveMany(network, colAddr, "collateral", tCol, userColReward);
+        final double[] borRewardsResolved = rewardAprResolver.resolveMany(network, borAddr, "borrow",     tBor, userBorReward);
+
+        final List<RoeHFHistoryPoint> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            out.add(buildResponse(network, colAddr, borAddr, L, cols.get(i), bors.get(i),
+                    colRewardsResolved[i], borRewardsResolved[i],
+                    pCol, pBor, ltPct, note));
+        }
         return out;
     }
 
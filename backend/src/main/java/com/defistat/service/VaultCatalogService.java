@@ -0,0 +1,119 @@
+package com.defistat.service;
+
+import com.defistat.api.dto.AssetDTO;
+import com.defistat.model.VaultCatalog;
+import com.defistat.repo.VaultCatalogRepo;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Vault list per network, persisted in Mongo and served from memory.
+ * - Readers (API, poller, backfill) never hit the subgraph unless the network has no catalog yet.
+ * - refresh() asks the subgraph only for vaults changed since the last seen subgraph block
+ *   (_change_block filter) and merges them; it falls back to a full keyset scan when that is not possible.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VaultCatalogService {
+
+    private static final int PAGE_SIZE = 500;
+
+    private final AssetService assetService;
+    private final VaultCatalogRepo repo;
+
+    private final Map<String, VaultCatalog> byNetwork = new ConcurrentHashMap<>();
+    /** One monitor per network, so a slow subgraph scan of one network does not block the others. */
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    /** Vaults of the network; loaded from Mongo (or the subgraph) on first use. */
+    public List<AssetDTO> list(String network) {
+        return current(network).getVaults();
+    }
+
+    /** Catalog of the network including its staleness (refreshedAt / subgraphBlock). */
+    public VaultCatalog current(String network) {
+        VaultCatalog c = byNetwork.get(network);
+        if (c != null) return c;
+        synchronized (lock(network)) {
+            c = byNetwork.get(network);
+            if (c != null) return c;
+            c = repo.findById(network).orElse(null);
+            if (c == null) return refresh(network);
+            byNetwork.put(network, c);
+            return c;
+        }
+    }
+
+    /**
+     * Bring the catalog up to the subgraph head: incremental when a previous block is known, else full.
+     */
+    public VaultCatalog refresh(String network) {
+        synchronized (lock(network)) {
+            return doRefresh(network);
+        }
+    }
+
+    // ---------------------------- Internals ----------------------------
+
+    private Object lock(String network) {
+        return locks.computeIfAbsent(network, k -> new Object());
+    }
+
+    private VaultCatalog doRefresh(String network) {
+        VaultCatalog cur = byNetwork.containsKey(network) ? byNetwork.get(network) : repo.findById(network).orElse(null);
+
+        Long head = null;
+        try {
+            head = assetService.subgraphBlock(network);
+        } catch (Exception e) {
+            log.warn("[vault-catalog] {} subgraph head unavailable, doing a full refresh: {}", network, e.getMessage());
+        }
+
+        VaultCatalog next = null;
+        if (cur != null && cur.getSubgraphBlock() != null && head != null) {
+            try {
+                List<AssetDTO> changed = assetService.fetchAssetsChangedSince(network, cur.getSubgraphBlock(), PAGE_SIZE);
+                next = merge(cur, changed, head);
+                log.info("[vault-catalog] {} incremental refresh from block {}: {} changed, {} total",
+                        network, cur.getSubgraphBlock(), changed.size(), next.getVaults().size());
+            } catch (Exception e) {
+                log.warn("[vault-catalog] {} incremental refresh failed, doing a full refresh: {}", network, e.getMessage());
+            }
+        }
+        if (next == null) {
+            List<AssetDTO> all = assetService.fetchAllAssets(network, false, PAGE_SIZE);
+            next = VaultCatalog.builder()
+                    .network(network)
+                    .vaults(List.copyOf(all))
+                    .subgraphBlock(head)
+                    .refreshedAt(Instant.now())
+                    .build();
+            log.info("[vault-catalog] {} full refresh: {} vaults", network, all.size());
+        }
+
+        repo.save(next);
+        byNetwork.put(network, next);
+        return next;
+    }
+
+    private static VaultCatalog merge(VaultCatalog cur, List<AssetDTO> changed, long head) {
+        Map<String, AssetDTO> byVault = new LinkedHashMap<>();
+        for (AssetDTO a : cur.getVaults()) byVault.put(a.vaultAddress.toLowerCase(), a);
+        for (AssetDTO a : changed) byVault.put(a.vaultAddress.toLowerCase(), a);
+        return VaultCatalog.builder()
+                .network(cur.getNetwork())
+                .vaults(List.copyOf(new ArrayList<>(byVault.values())))
+                .subgraphBlock(head)
+                .refreshedAt(Instant.now())
+                .build();
+    }
+}
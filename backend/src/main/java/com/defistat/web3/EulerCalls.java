@@ -0,0 +1,89 @@
+package com.defistat.web3;
+
+import org.web3j.crypto.Hash;
+
+/**
+ * Precompiled call templates for the fixed Euler read methods and an allocation-light uint256 decoder.
+ *
+ * All selectors are constants, so calldata is either a constant (no-arg views) or the selector with the
+ * address spliced in (UtilsLens.getAPYs). Return words are decoded straight from the hex result into
+ * double, rounding exactly like BigInteger.doubleValue() but without BigInteger/BigDecimal/Type objects.
+ */
+final class EulerCalls {
+
+    /** eVault.totalAssets() */
+    static final String TOTAL_ASSETS = selector("totalAssets()");
+    /** eVault.totalBorrows() */
+    static final String TOTAL_BORROWS = selector("totalBorrows()");
+    /** eVault.borrowAPY_RAY() */
+    static final String BORROW_APY_RAY = selector("borrowAPY_RAY()");
+    /** eVault.supplyAPY_RAY() */
+    static final String SUPPLY_APY_RAY = selector("supplyAPY_RAY()");
+
+    private static final String GET_APYS = selector("getAPYs(address)");
+    private static final String ADDRESS_PAD = "0".repeat(24);
+
+    private EulerCalls() {}
+
+    /** UtilsLens.getAPYs(vault) calldata: selector + left-padded address word. */
+    static String getApys(String vault) {
+        int from = vault.startsWith("0x") || vault.startsWith("0X") ? 2 : 0;
+        if (vault.length() - from != 40) throw new IllegalArgumentException("invalid address: " + vault);
+        return new StringBuilder(10 + 64)
+                .append(GET_APYS)
+                .append(ADDRESS_PAD)
+                .append(vault, from, vault.length())
+                .toString()
+                .toLowerCase();
+    }
+
+    /** True when the hex result holds at least {@code words} ABI words. */
+    static boolean hasWords(String hex, int words) {
+        return hex != null && hex.length() - prefixLen(hex) >= words * 64;
+    }
+
+    /**
+     * Decode the index-th uint256 word of a hex result into a correctly rounded double.
+     * Up to 16 significant hex digits are packed into a long, lower digits only contribute a sticky bit,
+     * so the single long→double conversion rounds exactly like BigInteger.doubleValue().
+     */
+    static double uint256(String hex, int index) {
+        int start = prefixLen(hex) + index * 64;
+        int end = start + 64;
+        if (hex.length() < end) throw new IllegalArgumentException("short return data for word #" + index);
+
+        int i = start;
+        while (i < end && hex.charAt(i) == '0') i++;
+        int significant = end - i;
+        if (significant == 0) return 0.0;
+
+        int head = Math.min(significant, 16);
+        long v = 0;
+        for (int k = 0; k < head; k++) v = (v << 4) | nibble(hex.charAt(i + k));
+
+        long sticky = 0;
+        for (int k = i + head; k < end && sticky == 0; k++) sticky = nibble(hex.charAt(k));
+        if (sticky != 0) v |= 1;
+
+        // unsigned long -> double, keeping the lowest (sticky) bit for correct rounding
+        double d = v >= 0 ? (double) v : (double) ((v >>> 1) | (v & 1)) * 2.0;
+        return Math.scalb(d, 4 * (significant - head));
+    }
+
+    // ---------------------------- Internals ----------------------------
+
+    private static String selector(String signature) {
+        return Hash.sha3String(signature).substring(0, 10);
+    }
+
+    private static int prefixLen(String hex) {
+        return hex.length() >= 2 && hex.charAt(0) == '0' && (hex.charAt(1) == 'x' || hex.charAt(1) == 'X') ? 2 : 0;
+    }
+
+    private static int nibble(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        throw new IllegalArgumentException("invalid hex char: " + c);
+    }
+}
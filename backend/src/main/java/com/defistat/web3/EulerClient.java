@@ -1,25 +1,27 @@
 package com.defistat.web3;
+import com.defistat.config.AppProps;
 import com.defistat.web3.exception.RetryableRpcException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
-import org.web3j.abi.FunctionEncoder;
-import org.web3j.abi.FunctionReturnDecoder;
-import org.web3j.abi.TypeReference;
-import org.web3j.abi.datatypes.Address;
-import org.web3j.abi.datatypes.Function;
-import org.web3j.abi.datatypes.Type;
-import org.web3j.abi.datatypes.generated.Uint256;
 import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
 import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.crypto.Hash;
+import org.web3j.protocol.core.methods.request.EthFilter;
 import org.web3j.protocol.core.methods.request.Transaction;
 import org.web3j.protocol.core.methods.response.EthCall;
+import org.web3j.protocol.core.methods.response.EthLog;
 
 import java.math.BigInteger;
-import java.util.Arrays;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Reads metrics from Euler eVaults (APYs & utilization) with RPC failover.
@@ -29,7 +31,11 @@ import java.util.Locale;
  *    so that rate-limit / transport errors switch to another RPC endpoint automatically.
  *  - We first try UtilsLens.getAPYs(vault), then fall back to direct eVault view
  *    functions (borrowAPY_RAY / supplyAPY_RAY). If both fail, we still return utilization
- *    and NaN for APYs to highlight the gap.
+ *    and NaN for APYs to highlight the gap. The working path is cached per vault (VaultCapabilities),
+ *    so later reads skip calls that are known to revert.
+ *  - fetchBatch(...) packs many vaults into chunked Multicall3.aggregate3 calls (allowFailure = true),
+ *    so a whole poll cycle costs a handful of eth_calls instead of 3–5 per vault.
+ *  - Reads can be pinned to a block number so all values of one poll cycle come from the same block.
  */
 @Component
 @RequiredArgsConstructor
@@ -39,8 +45,24 @@ public class EulerClient {
     /** RAY = 1e27; percent = ray / 1e27 * 100 => divide by 1e25 */
     private static final double RAY_TO_PERCENT = 1e25;
 
+    /** eVault events that change balances, borrows or rates (VaultStatus is emitted after every state change). */
+    private static final String[] ACTIVITY_TOPICS = {
+            Hash.sha3String("Deposit(address,address,uint256,uint256)"),
+            Hash.sha3String("Withdraw(address,address,address,uint256,uint256)"),
+            Hash.sha3String("Borrow(address,uint256)"),
+            Hash.sha3String("Repay(address,uint256)"),
+            Hash.sha3String("InterestAccrued(address,uint256)"),
+            Hash.sha3String("VaultStatus(uint256,uint256,uint256,uint256,uint256,uint256,uint256)")
+    };
+
+    /** Addresses per eth_getLogs filter (providers limit filter size). */
+    private static final int LOG_ADDRESS_CHUNK = 500;
+
     private final Web3ClientFactory factory;
 
+    /** Which APY read path works per vault (lens / direct / none), re-probed periodically. */
+    private final VaultCapabilities capabilities = new VaultCapabilities();
+
     // ---------------------------- API model ----------------------------
 
     public static class VaultSnapshot {
@@ -63,25 +85,27 @@ public class EulerClient {
      * (or IO issues), factory switches to the next endpoint automatically.
      */
     public VaultSnapshot fetchSingle(String network, String vaultAddress) throws Exception {
+        return fetchSingle(network, vaultAddress, null);
+    }
+
+    /**
+     * Same as {@link #fetchSingle(String, String)} but every eth_call is pinned to {@code blockNumber}
+     * (null = latest).
+     */
+    public VaultSnapshot fetchSingle(String network, String vaultAddress, BigInteger blockNumber) throws Exception {
+        return readSingle(network, vaultAddress, blockNumber, true);
+    }
+
+    private VaultSnapshot readSingle(String network, String vaultAddress, BigInteger blockNumber, boolean learn) {
+        final DefaultBlockParameter block = blockParam(blockNumber);
         // Execute the whole read against a single RPC; failover if a RetryableRpcException/transport occurs.
         return factory.executeWithFailover(network, web3 -> {
             try {
                 // 1) utilization from eVault
-                double utilizationPct = fetchUtilization(web3, vaultAddress);
-
-                // 2) APYs via UtilsLens (preferred)
-                String utilsLens = factory.getUtilsLens(network);
-                double[] apy = tryLensGetAPYs(web3, utilsLens, vaultAddress);
-
-                // 3) Fallback to direct view functions if lens failed
-                if (Double.isNaN(apy[0]) || Double.isNaN(apy[1])) {
-                    double[] direct = tryVaultDirectAPYs(web3, vaultAddress);
-                    if (!Double.isNaN(direct[0]) && !Double.isNaN(direct[1])) {
-                        apy = direct;
-                    } else {
-                        log.warn("[EulerClient] APY unavailable for vault={} on network={}", vaultAddress, network);
-                    }
-                }
+                double utilizationPct = fetchUtilization(web3, vaultAddress, block);
+
+                // 2) APYs: known working path first; unknown vaults probe UtilsLens, then direct view functions
+                double[] apy = readApys(web3, network, vaultAddress, block, learn);
 
                 return new VaultSnapshot(apy[0], apy[1], utilizationPct);
             } catch (RetryableRpcException re) {
@@ -91,149 +115,551 @@ public class EulerClient {
                 // non-retryable application error (e.g., ABI mismatch) -> wrap and let factory decide/log
                 throw new RuntimeException("EulerClient.fetchSingle failed: " + e.getMessage(), e);
             }
-        });
+        }, true);
+    }
+
+    /**
+     * Current head block number of the network (under failover).
+     */
+    public BigInteger latestBlock(String network) {
+        return factory.executeWithFailover(network, web3 -> {
+            try {
+                return web3.ethBlockNumber().send().getBlockNumber();
+            } catch (Exception e) {
+                throw new RuntimeException("EulerClient.latestBlock failed: " + e.getMessage(), e);
+            }
+        }, true);
+    }
+
+    /**
+     * Timestamp (epoch seconds) of the given block (under failover).
+     */
+    public long blockTimestamp(String network, BigInteger blockNumber) {
+        return factory.executeWithFailover(network, web3 -> {
+            try {
+                var resp = web3.ethGetBlockByNumber(DefaultBlockParameter.valueOf(blockNumber), false).send();
+                if (resp.hasError() || resp.getBlock() == null) {
+                    String msg = resp.hasError() ? resp.getError().getMessage() : "block not found";
+                    if (isRateLimited(msg)) throw new RetryableRpcException("rate-limited on eth_getBlockByNumber: " + msg);
+                    throw new IllegalStateException("eth_getBlockByNumber(" + blockNumber + ") error: " + msg);
+                }
+                return resp.getBlock().getTimestamp().longValue();
+            } catch (RetryableRpcException re) {
+                throw re;
+            } catch (Exception e) {
+                throw new RuntimeException("EulerClient.blockTimestamp failed: " + e.getMessage(), e);
+            }
+        }, true);
+    }
+
+    /**
+     * Fetch snapshots for many vaults using chunked Multicall3.aggregate3 calls.
+     * Round 1 reads totalAssets/totalBorrows/UtilsLens.getAPYs for every vault of the chunk,
+     * round 2 reads borrowAPY_RAY/supplyAPY_RAY only for vaults whose lens call failed.
+     * If multicall is disabled or a whole chunk fails (no Multicall3 deployment, gas cap, ...),
+     * that chunk falls back to JSON-RPC batch arrays (if enabled) and finally to fetchSingle per vault.
+     *
+     * @return vault address (as passed in) -> snapshot; vaults that could not be read are absent
+     */
+    public Map<String, VaultSnapshot> fetchBatch(String network, List<String> vaults) {
+        return fetchBatch(network, vaults, null);
+    }
+
+    /**
+     * Batched read pinned to {@code blockNumber} (null = latest), see {@link #fetchBatch(String, List)}.
+     * For live reads (head or a few blocks behind it); the APY read path learned here is cached per vault.
+     */
+    public Map<String, VaultSnapshot> fetchBatch(String network, List<String> vaults, BigInteger blockNumber) {
+        return fetchBatch(network, vaults, blockNumber, true);
+    }
+
+    /**
+     * Batched read at a past block (backfill): every APY path is probed and nothing is cached,
+     * since what a vault supported back then (or whether it existed) says nothing about today.
+     */
+    public Map<String, VaultSnapshot> fetchHistoricBatch(String network, List<String> vaults, BigInteger blockNumber) {
+        return fetchBatch(network, vaults, blockNumber, false);
+    }
+
+    private Map<String, VaultSnapshot> fetchBatch(String network, List<String> vaults, BigInteger blockNumber, boolean learn) {
+        final DefaultBlockParameter block = blockParam(blockNumber);
+        AppProps.Multicall mc = factory.getMulticall(network);
+        boolean rpcBatch = factory.getRpcBatch(network).isEnabled();
+        Map<String, VaultSnapshot> out = new LinkedHashMap<>();
+        if (!mc.isEnabled() && !rpcBatch) {
+            fetchEachSingle(network, vaults, blockNumber, learn, out);
+            return out;
+        }
+
+        CallRunner multicallRunner = calls -> aggregate3(network, mc.getAddress(), calls, block);
+        CallRunner batchRunner = calls -> rpcBatch(network, calls, block);
+
+        int chunk = Math.max(1, mc.getChunkSize());
+        for (int i = 0; i < vaults.size(); i += chunk) {
+            List<String> part = vaults.subList(i, Math.min(i + chunk, vaults.size()));
+            if (mc.isEnabled()) {
+                try {
+                    out.putAll(fetchChunk(network, part, multicallRunner, block, learn));
+                    continue;
+                } catch (Exception e) {
+                    log.warn("[EulerClient] multicall chunk failed on network={} ({} vaults), falling back: {}",
+                            network, part.size(), e.getMessage());
+                }
+            }
+            if (rpcBatch) {
+                try {
+                    out.putAll(fetchChunk(network, part, batchRunner, block, learn));
+                    continue;
+                } catch (Exception e) {
+                    log.warn("[EulerClient] JSON-RPC batch chunk failed on network={} ({} vaults), falling back: {}",
+                            network, part.size(), e.getMessage());
+                }
+            }
+            fetchEachSingle(network, part, blockNumber, learn, out);
+        }
+        log.debug("[EulerClient] batch read network={} vaults={} ok={}", network, vaults.size(), out.size());
+        return out;
+    }
+
+    /**
+     * Vaults (lower-case addresses) that emitted any state-changing eVault event in [fromBlock, toBlock].
+     * Scans eth_getLogs in block chunks of {@code blockRange}; a chunk the provider rejects as too large is halved.
+     */
+    public Set<String> activeVaults(String network, Collection<String> vaults,
+                                    BigInteger fromBlock, BigInteger toBlock, int blockRange) {
+        Set<String> out = new HashSet<>();
+        List<String> addrs = vaults.stream().map(v -> v.toLowerCase(Locale.ROOT)).distinct().toList();
+        BigInteger step = BigInteger.valueOf(Math.max(1, blockRange));
+        for (int i = 0; i < addrs.size(); i += LOG_ADDRESS_CHUNK) {
+            List<String> part = addrs.subList(i, Math.min(i + LOG_ADDRESS_CHUNK, addrs.size()));
+            BigInteger from = fromBlock;
+            while (from.compareTo(toBlock) <= 0) {
+                BigInteger to = from.add(step).subtract(BigInteger.ONE).min(toBlock);
+                scanLogs(network, part, from, to, out);
+                from = to.add(BigInteger.ONE);
+            }
+        }
+        log.debug("[EulerClient] logs network={} blocks={}..{} vaults={} active={}", network, fromBlock, toBlock, addrs.size(), out.size());
+        return out;
     }
 
     // ---------------------------- Internals ----------------------------
 
+    private void scanLogs(String network, List<String> addrs, BigInteger from, BigInteger to, Set<String> out) {
+        try {
+            List<String> emitters = factory.executeWithFailover(network, web3 -> {
+                try {
+                    EthFilter filter = new EthFilter(DefaultBlockParameter.valueOf(from), DefaultBlockParameter.valueOf(to), addrs);
+                    filter.addOptionalTopics(ACTIVITY_TOPICS);
+                    EthLog resp = web3.ethGetLogs(filter).send();
+                    if (resp.hasError()) {
+                        String msg = resp.getError().getMessage();
+                        if (isRateLimited(msg)) throw new RetryableRpcException("rate-limited on eth_getLogs: " + msg);
+                        throw new IllegalStateException("eth_getLogs error: " + msg);
+                    }
+                    List<String> list = new ArrayList<>();
+                    for (Object r : resp.getLogs()) {
+                        if (r instanceof EthLog.LogObject lo) list.add(lo.getAddress().toLowerCase(Locale.ROOT));
+                    }
+                    return list;
+                } catch (RetryableRpcException re) {
+                    throw re;
+                } catch (Exception e) {
+                    throw new RuntimeException("EulerClient.scanLogs failed: " + e.getMessage(), e);
+                }
+            }, true);
+            out.addAll(emitters);
+        } catch (RuntimeException e) {
+            if (to.compareTo(from) > 0 && isRangeRejected(e.getMessage())) {
+                BigInteger mid = from.add(to).shiftRight(1);
+                scanLogs(network, addrs, from, mid, out);
+                scanLogs(network, addrs, mid.add(BigInteger.ONE), to, out);
+                return;
+            }
+            throw e;
+        }
+    }
+
+
     /**
      * Read utilization = totalBorrows / totalAssets * 100 (both values come from eVault).
      * If RPC returns a rate-limit error, we throw RetryableRpcException so the factory can switch endpoint.
      */
-    private double fetchUtilization(Web3j web3, String vault) throws Exception {
-        Function fTA = new Function("totalAssets", Collections.emptyList(),
-                Collections.singletonList(new TypeReference<Uint256>() {}));
-        Function fTB = new Function("totalBorrows", Collections.emptyList(),
-                Collections.singletonList(new TypeReference<Uint256>() {}));
-
+    private double fetchUtilization(Web3j web3, String vault, DefaultBlockParameter block) throws Exception {
         EthCall callTA = web3.ethCall(
-                Transaction.createEthCallTransaction(null, vault, FunctionEncoder.encode(fTA)),
-                DefaultBlockParameterName.LATEST).send();
+                Transaction.createEthCallTransaction(null, vault, EulerCalls.TOTAL_ASSETS),
+                block).send();
         if (callTA.hasError() && isRateLimited(callTA.getError().getMessage())) {
             throw new RetryableRpcException("rate-limited on totalAssets: " + callTA.getError().getMessage());
         }
 
         EthCall callTB = web3.ethCall(
-                Transaction.createEthCallTransaction(null, vault, FunctionEncoder.encode(fTB)),
-                DefaultBlockParameterName.LATEST).send();
+                Transaction.createEthCallTransaction(null, vault, EulerCalls.TOTAL_BORROWS),
+                block).send();
         if (callTB.hasError() && isRateLimited(callTB.getError().getMessage())) {
             throw new RetryableRpcException("rate-limited on totalBorrows: " + callTB.getError().getMessage());
         }
 
-        if (callTA.isReverted() || callTB.isReverted()) {
+        if (callTA.isReverted() || callTB.isReverted()
+                || !EulerCalls.hasWords(callTA.getValue(), 1) || !EulerCalls.hasWords(callTB.getValue(), 1)) {
             throw new RuntimeException("vault totalAssets/totalBorrows reverted for " + vault);
         }
 
-        BigInteger ta = (BigInteger) FunctionReturnDecoder.decode(callTA.getValue(), fTA.getOutputParameters())
-                .get(0).getValue();
-        BigInteger tb = (BigInteger) FunctionReturnDecoder.decode(callTB.getValue(), fTB.getOutputParameters())
-                .get(0).getValue();
-
-        double totalAssets = new java.math.BigDecimal(ta).doubleValue();
-        double totalBorrows = new java.math.BigDecimal(tb).doubleValue();
-        double util = totalAssets > 0 ? (totalBorrows / totalAssets) * 100.0 : 0.0;
+        double util = utilizationPct(EulerCalls.uint256(callTA.getValue(), 0), EulerCalls.uint256(callTB.getValue(), 0));
 
         log.debug("[EulerClient] utilization vault={} utilPct={}", vault, util);
         return util;
     }
 
     /**
-     * Preferred path: UtilsLens.getAPYs(vault) → (borrowAPY_RAY, supplyAPY_RAY).
-     * Returns {borrowPct, supplyPct} in percent; Double.NaN on decode/revert errors.
+     * APYs via the vault's known working path; unknown (or expired) vaults try UtilsLens first, then
+     * direct view functions. With {@code learn}, the outcome is cached, but a path is only written off on a
+     * definite EVM revert: timeouts, provider errors and out-of-gas leave the cache as it was.
+     * Vaults known to support neither cost no calls.
+     */
+    private double[] readApys(Web3j web3, String network, String vault, DefaultBlockParameter block, boolean learn) {
+        String utilsLens = factory.getUtilsLens(network);
+        boolean hasLens = utilsLens != null && !utilsLens.isBlank();
+        VaultCapabilities.ApyPath known = learn ? capabilities.known(network, vault) : null;
+        if (known == VaultCapabilities.ApyPath.NONE) return new double[]{Double.NaN, Double.NaN};
+
+        List<VaultCapabilities.ApyPath> order = known == VaultCapabilities.ApyPath.DIRECT
+                ? List.of(VaultCapabilities.ApyPath.DIRECT, VaultCapabilities.ApyPath.LENS)
+                : List.of(VaultCapabilities.ApyPath.LENS, VaultCapabilities.ApyPath.DIRECT);
+        boolean allReverted = true; // every path tried so far definitely reverted
+        for (VaultCapabilities.ApyPath path : order) {
+            if (path == VaultCapabilities.ApyPath.LENS && !hasLens) continue;
+            ApyRead read = path == VaultCapabilities.ApyPath.LENS
+                    ? tryLensGetAPYs(web3, utilsLens, vault, block)
+                    : tryVaultDirectAPYs(web3, vault, block);
+            if (read.ok()) {
+                if (learn && allReverted) capabilities.record(network, vault, path);
+                return new double[]{read.borrowPct(), read.supplyPct()};
+            }
+            allReverted &= read.reverted();
+        }
+        log.warn("[EulerClient] APY unavailable for vault={} on network={}", vault, network);
+        if (learn && allReverted) capabilities.record(network, vault, VaultCapabilities.ApyPath.NONE);
+        return new double[]{Double.NaN, Double.NaN};
+    }
+
+    /** One APY read attempt: both values, or why there are none (definite revert vs. an error that proves nothing). */
+    private record ApyRead(double borrowPct, double supplyPct, boolean reverted) {
+        static final ApyRead REVERTED = new ApyRead(Double.NaN, Double.NaN, true);
+        static final ApyRead FAILED = new ApyRead(Double.NaN, Double.NaN, false);
+
+        boolean ok() {
+            return !Double.isNaN(borrowPct) && !Double.isNaN(supplyPct);
+        }
+    }
+
+    /**
+     * Preferred path: UtilsLens.getAPYs(vault) → (borrowAPY_RAY, supplyAPY_RAY), in percent.
      * Throws RetryableRpcException if RPC explicitly reports rate-limiting.
      */
-    private double[] tryLensGetAPYs(Web3j web3, String utilsLens, String vault) {
+    private ApyRead tryLensGetAPYs(Web3j web3, String utilsLens, String vault, DefaultBlockParameter block) {
         try {
-            Function fApys = new Function(
-                    "getAPYs",
-                    Collections.singletonList(new Address(vault)),
-                    Arrays.asList(new TypeReference<Uint256>() {}, new TypeReference<Uint256>() {})
-            );
             EthCall call = web3.ethCall(
-                    Transaction.createEthCallTransaction(null, normalizeAddress(utilsLens), FunctionEncoder.encode(fApys)),
-                    DefaultBlockParameterName.LATEST).send();
+                    Transaction.createEthCallTransaction(null, normalizeAddress(utilsLens), EulerCalls.getApys(vault)),
+                    block).send();
 
             if (call.hasError() && isRateLimited(call.getError().getMessage())) {
                 throw new RetryableRpcException("rate-limited on UtilsLens.getAPYs: " + call.getError().getMessage());
             }
-            if (call.isReverted() || call.getError() != null) {
-                log.warn("[EulerClient] UtilsLens.getAPYs reverted/error for vault={} err={}", vault, call.getError());
-                return new double[]{Double.NaN, Double.NaN};
+            if (call.isReverted() || !EulerCalls.hasWords(call.getValue(), 2)) {
+                log.warn("[EulerClient] UtilsLens.getAPYs reverted/error for vault={} err={}", vault,
+                        call.getError() != null ? call.getError().getMessage() : call.getRevertReason());
+                return isExecutionRevert(call) ? ApyRead.REVERTED : ApyRead.FAILED;
             }
 
-            List<Type> out = FunctionReturnDecoder.decode(call.getValue(), fApys.getOutputParameters());
-            BigInteger borrow = (BigInteger) out.get(0).getValue();
-            BigInteger supply = (BigInteger) out.get(1).getValue();
-
-            double borrowPct = borrow.doubleValue() / RAY_TO_PERCENT;
-            double supplyPct = supply.doubleValue() / RAY_TO_PERCENT;
+            double borrowPct = EulerCalls.uint256(call.getValue(), 0) / RAY_TO_PERCENT;
+            double supplyPct = EulerCalls.uint256(call.getValue(), 1) / RAY_TO_PERCENT;
 
             log.debug("[EulerClient] lens APYs vault={} borrowPct={} supplyPct={}", vault, borrowPct, supplyPct);
-            return new double[]{borrowPct, supplyPct};
+            return new ApyRead(borrowPct, supplyPct, false);
         } catch (RetryableRpcException re) {
             throw re;
         } catch (Exception e) {
             log.warn("[EulerClient] UtilsLens.getAPYs failed for vault={} : {}", vault, e.toString());
-            return new double[]{Double.NaN, Double.NaN};
+            return ApyRead.FAILED;
         }
     }
 
     /**
-     * Fallback path: call eVault view functions borrowAPY_RAY & supplyAPY_RAY.
-     * Returns {borrowPct, supplyPct} in percent; Double.NaN on decode/revert errors.
+     * Fallback path: call eVault view functions borrowAPY_RAY & supplyAPY_RAY, in percent.
      * Throws RetryableRpcException if RPC explicitly reports rate-limiting.
      */
-    private double[] tryVaultDirectAPYs(Web3j web3, String vault) {
+    private ApyRead tryVaultDirectAPYs(Web3j web3, String vault, DefaultBlockParameter block) {
         try {
-            Function fBorrow = new Function("borrowAPY_RAY", Collections.emptyList(),
-                    Collections.singletonList(new TypeReference<Uint256>() {}));
-            Function fSupply = new Function("supplyAPY_RAY", Collections.emptyList(),
-                    Collections.singletonList(new TypeReference<Uint256>() {}));
-
             EthCall cBorrow = web3.ethCall(
-                    Transaction.createEthCallTransaction(null, vault, FunctionEncoder.encode(fBorrow)),
-                    DefaultBlockParameterName.LATEST).send();
+                    Transaction.createEthCallTransaction(null, vault, EulerCalls.BORROW_APY_RAY),
+                    block).send();
             if (cBorrow.hasError() && isRateLimited(cBorrow.getError().getMessage())) {
                 throw new RetryableRpcException("rate-limited on borrowAPY_RAY: " + cBorrow.getError().getMessage());
             }
 
             EthCall cSupply = web3.ethCall(
-                    Transaction.createEthCallTransaction(null, vault, FunctionEncoder.encode(fSupply)),
-                    DefaultBlockParameterName.LATEST).send();
+                    Transaction.createEthCallTransaction(null, vault, EulerCalls.SUPPLY_APY_RAY),
+                    block).send();
             if (cSupply.hasError() && isRateLimited(cSupply.getError().getMessage())) {
                 throw new RetryableRpcException("rate-limited on supplyAPY_RAY: " + cSupply.getError().getMessage());
             }
 
-            if (cBorrow.isReverted() || cSupply.isReverted()) {
+            boolean borrowOk = !cBorrow.isReverted() && EulerCalls.hasWords(cBorrow.getValue(), 1);
+            boolean supplyOk = !cSupply.isReverted() && EulerCalls.hasWords(cSupply.getValue(), 1);
+            if (!borrowOk || !supplyOk) {
                 log.warn("[EulerClient] vault.{borrowAPY_RAY|supplyAPY_RAY} reverted for {}", vault);
-                return new double[]{Double.NaN, Double.NaN};
+                boolean reverted = (!borrowOk && isExecutionRevert(cBorrow)) || (!supplyOk && isExecutionRevert(cSupply));
+                return reverted ? ApyRead.REVERTED : ApyRead.FAILED;
             }
 
-            BigInteger b = (BigInteger) FunctionReturnDecoder.decode(cBorrow.getValue(), fBorrow.getOutputParameters())
-                    .get(0).getValue();
-            BigInteger s = (BigInteger) FunctionReturnDecoder.decode(cSupply.getValue(), fSupply.getOutputParameters())
-                    .get(0).getValue();
-
-            double borrowPct = b.doubleValue() / RAY_TO_PERCENT;
-            double supplyPct = s.doubleValue() / RAY_TO_PERCENT;
+            double borrowPct = EulerCalls.uint256(cBorrow.getValue(), 0) / RAY_TO_PERCENT;
+            double supplyPct = EulerCalls.uint256(cSupply.getValue(), 0) / RAY_TO_PERCENT;
 
             log.debug("[EulerClient] direct APYs vault={} borrowPct={} supplyPct={}", vault, borrowPct, supplyPct);
-            return new double[]{borrowPct, supplyPct};
+            return new ApyRead(borrowPct, supplyPct, false);
         } catch (RetryableRpcException re) {
             throw re;
         } catch (Exception e) {
             log.warn("[EulerClient] vault direct APYs failed for {} : {}", vault, e.toString());
-            return new double[]{Double.NaN, Double.NaN};
+            return ApyRead.FAILED;
+        }
+    }
+
+    // ---------------------------- Batch internals ----------------------------
+
+    /** Executes a list of sub-calls and returns results in the same order. */
+    @FunctionalInterface
+    private interface CallRunner {
+        List<Multicall3.Result> run(List<Multicall3.Call> calls);
+    }
+
+    private void fetchEachSingle(String network, List<String> vaults, BigInteger blockNumber, boolean learn,
+                                 Map<String, VaultSnapshot> out) {
+        for (String v : vaults) {
+            try {
+                out.put(v, readSingle(network, v, blockNumber, learn));
+            } catch (Exception ex) {
+                log.error("[EulerClient] single read failed for {} {}: {}", network, v, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Two rounds of sub-calls for a chunk of vaults. With {@code learn}, successful paths are cached right away;
+     * a path is only written off after a lone eth_call confirms the revert (see {@link #confirmReverted}),
+     * since a failed sub-call of a batch may just be out of gas or a sub-request that no endpoint answered.
+     */
+    private Map<String, VaultSnapshot> fetchChunk(String network, List<String> vaults, CallRunner runner,
+                                                  DefaultBlockParameter block, boolean learn) {
+        String lensCfg = factory.getUtilsLens(network);
+        String lens = lensCfg == null || lensCfg.isBlank() ? null : normalizeAddress(lensCfg);
+
+        // Round 1: utilization inputs for every vault + lens APYs unless the vault is known to need another path
+        List<VaultCapabilities.ApyPath> known = new ArrayList<>(vaults.size());
+        List<Multicall3.Call> calls = new ArrayList<>(vaults.size() * 3);
+        int[] lensAt = new int[vaults.size()];
+        for (int i = 0; i < vaults.size(); i++) {
+            String v = vaults.get(i);
+            VaultCapabilities.ApyPath path = learn ? capabilities.known(network, v) : null;
+            known.add(path);
+            calls.add(new Multicall3.Call(v, EulerCalls.TOTAL_ASSETS));
+            calls.add(new Multicall3.Call(v, EulerCalls.TOTAL_BORROWS));
+            lensAt[i] = -1;
+            if (lens != null && (path == null || path == VaultCapabilities.ApyPath.LENS)) {
+                lensAt[i] = calls.size();
+                calls.add(new Multicall3.Call(lens, EulerCalls.getApys(v)));
+            }
+        }
+        List<Multicall3.Result> r1 = runner.run(calls);
+
+        Map<String, Double> utilByVault = new LinkedHashMap<>();
+        Map<String, double[]> apyByVault = new LinkedHashMap<>();
+        List<String> needDirect = new ArrayList<>();
+        List<VaultCapabilities.ApyPath> needDirectKnown = new ArrayList<>();
+        int at = 0;
+        for (int i = 0; i < vaults.size(); i++) {
+            String v = vaults.get(i);
+            VaultCapabilities.ApyPath path = known.get(i);
+            Multicall3.Result ta = r1.get(at);
+            Multicall3.Result tb = r1.get(at + 1);
+            at += lensAt[i] >= 0 ? 3 : 2;
+            if (!ta.hasWords(1) || !tb.hasWords(1)) {
+                log.error("[EulerClient] vault totalAssets/totalBorrows reverted for {} on {}", v, network);
+                continue;
+            }
+            utilByVault.put(v, utilizationPct(EulerCalls.uint256(ta.returnData(), 0), EulerCalls.uint256(tb.returnData(), 0)));
+
+            if (path == VaultCapabilities.ApyPath.NONE) continue;
+            Multicall3.Result apys = lensAt[i] >= 0 ? r1.get(lensAt[i]) : null;
+            if (apys != null && apys.hasWords(2)) {
+                apyByVault.put(v, new double[]{
+                        EulerCalls.uint256(apys.returnData(), 0) / RAY_TO_PERCENT,
+                        EulerCalls.uint256(apys.returnData(), 1) / RAY_TO_PERCENT});
+                if (learn) capabilities.record(network, v, VaultCapabilities.ApyPath.LENS);
+            } else {
+                needDirect.add(v);
+                needDirectKnown.add(path);
+            }
+        }
+
+        // Round 2: direct eVault view functions where the lens failed or the vault is known to need them
+        if (!needDirect.isEmpty()) {
+            List<Multicall3.Call> direct = new ArrayList<>(needDirect.size() * 2);
+            for (String v : needDirect) {
+                direct.add(new Multicall3.Call(v, EulerCalls.BORROW_APY_RAY));
+                direct.add(new Multicall3.Call(v, EulerCalls.SUPPLY_APY_RAY));
+            }
+            List<Multicall3.Result> r2 = runner.run(direct);
+            for (int i = 0; i < needDirect.size(); i++) {
+                String v = needDirect.get(i);
+                Multicall3.Result b = r2.get(i * 2);
+                Multicall3.Result s = r2.get(i * 2 + 1);
+                VaultCapabilities.ApyPath path = needDirectKnown.get(i);
+                if (b.hasWords(1) && s.hasWords(1)) {
+                    apyByVault.put(v, new double[]{
+                            EulerCalls.uint256(b.returnData(), 0) / RAY_TO_PERCENT,
+                            EulerCalls.uint256(s.returnData(), 0) / RAY_TO_PERCENT});
+                    // switch to DIRECT only when the lens really reverts (not when its sub-call ran out of gas)
+                    if (learn && (path == VaultCapabilities.ApyPath.DIRECT || lens == null
+                            || confirmReverted(network, lens, EulerCalls.getApys(v), block))) {
+                        capabilities.record(network, v, VaultCapabilities.ApyPath.DIRECT);
+                    }
+                    continue;
+                }
+                log.warn("[EulerClient] APY unavailable for vault={} on network={}", v, network);
+                if (!learn || !confirmReverted(network, v, EulerCalls.BORROW_APY_RAY, block)) continue;
+                if (path == VaultCapabilities.ApyPath.DIRECT) {
+                    // known path stopped working: probe every path on the next read
+                    capabilities.invalidate(network, v);
+                } else if (lens == null || confirmReverted(network, lens, EulerCalls.getApys(v), block)) {
+                    capabilities.record(network, v, VaultCapabilities.ApyPath.NONE);
+                }
+            }
+        }
+
+        Map<String, VaultSnapshot> out = new LinkedHashMap<>();
+        utilByVault.forEach((v, util) -> {
+            double[] apy = apyByVault.getOrDefault(v, new double[]{Double.NaN, Double.NaN});
+            out.put(v, new VaultSnapshot(apy[0], apy[1], util));
+        });
+        return out;
+    }
+
+    /**
+     * True only when a lone eth_call of the sub-call is definitely rejected by the EVM at that block.
+     * Transport errors, exhausted endpoints and out-of-gas count as "not confirmed".
+     */
+    private boolean confirmReverted(String network, String target, String callData, DefaultBlockParameter block) {
+        try {
+            return factory.executeWithFailover(network, web3 -> {
+                try {
+                    EthCall call = web3.ethCall(Transaction.createEthCallTransaction(null, target, callData), block).send();
+                    if (call.hasError() && isRateLimited(call.getError().getMessage())) {
+                        throw new RetryableRpcException("rate-limited on revert check: " + call.getError().getMessage());
+                    }
+                    return isExecutionRevert(call);
+                } catch (RetryableRpcException re) {
+                    throw re;
+                } catch (Exception e) {
+                    throw new RuntimeException("EulerClient.confirmReverted failed: " + e.getMessage(), e);
+                }
+            }, true);
+        } catch (Exception e) {
+            log.debug("[EulerClient] revert check inconclusive for {} on {}: {}", target, network, e.getMessage());
+            return false;
         }
     }
 
+    /**
+     * Single eth_call to Multicall3.aggregate3 under failover.
+     * Rate-limits are surfaced as RetryableRpcException; a reverted aggregate (e.g. no deployment) is fatal for the chunk.
+     */
+    private List<Multicall3.Result> aggregate3(String network, String multicall, List<Multicall3.Call> calls,
+                                              DefaultBlockParameter block) {
+        String data = Multicall3.encodeAggregate3(calls);
+        return factory.executeWithFailover(network, web3 -> {
+            try {
+                EthCall call = web3.ethCall(
+                        Transaction.createEthCallTransaction(null, multicall, data),
+                        block).send();
+                if (call.hasError() && isRateLimited(call.getError().getMessage())) {
+                    throw new RetryableRpcException("rate-limited on Multicall3.aggregate3: " + call.getError().getMessage());
+                }
+                if (call.isReverted() || call.hasError()) {
+                    throw new IllegalStateException("Multicall3.aggregate3 reverted: "
+                            + (call.hasError() ? call.getError().getMessage() : call.getRevertReason()));
+                }
+                List<Multicall3.Result> res = Multicall3.decodeAggregate3(call.getValue());
+                if (res.size() != calls.size()) {
+                    throw new IllegalStateException("Multicall3.aggregate3 returned " + res.size() + " results for " + calls.size() + " calls");
+                }
+                return res;
+            } catch (RetryableRpcException re) {
+                throw re;
+            } catch (Exception e) {
+                throw new RuntimeException("EulerClient.aggregate3 failed: " + e.getMessage(), e);
+            }
+        }, true);
+    }
+
+    /**
+     * Same sub-calls sent as JSON-RPC batch arrays (for providers without Multicall3 or with eth_call gas caps).
+     * Sub-requests that failed on every endpoint are reported as unsuccessful results.
+     */
+    private List<Multicall3.Result> rpcBatch(String network, List<Multicall3.Call> calls, DefaultBlockParameter block) {
+        List<Transaction> txs = new ArrayList<>(calls.size());
+        for (Multicall3.Call c : calls) {
+            txs.add(Transaction.createEthCallTransaction(null, c.target(), c.callData()));
+        }
+        List<EthCall> resp = factory.executeCallBatchWithFailover(network, txs, block);
+
+        List<Multicall3.Result> out = new ArrayList<>(resp.size());
+        for (EthCall call : resp) {
+            boolean ok = call != null && !call.hasError() && !call.isReverted() && call.getValue() != null;
+            out.add(new Multicall3.Result(ok, ok ? call.getValue() : "0x"));
+        }
+        return out;
+    }
+
     // ---------------------------- Utils ----------------------------
 
+    private static double utilizationPct(double totalAssets, double totalBorrows) {
+        return totalAssets > 0 ? (totalBorrows / totalAssets) * 100.0 : 0.0;
+    }
+
+    private static DefaultBlockParameter blockParam(BigInteger blockNumber) {
+        return blockNumber == null ? DefaultBlockParameterName.LATEST : DefaultBlockParameter.valueOf(blockNumber);
+    }
+
     private static String normalizeAddress(String addr) {
         if (addr == null) throw new IllegalArgumentException("address is null");
         return addr.startsWith("0x") ? addr : "0x" + addr;
     }
 
+    /**
+     * The call itself was rejected by the EVM: a revert error (code 3 / "revert" message), revert data in the
+     * result, or a successful call without a return word (no such function / no code). Not out-of-gas.
+     */
+    private static boolean isExecutionRevert(EthCall call) {
+        if (!call.hasError()) return call.isReverted() || !EulerCalls.hasWords(call.getValue(), 1);
+        String msg = call.getError().getMessage() == null ? "" : call.getError().getMessage().toLowerCase(Locale.ROOT);
+        if (msg.contains("out of gas") || msg.contains("gas required")) return false;
+        return call.getError().getCode() == 3 || msg.contains("revert");
+    }
+
+    /** Provider refused the block range / result size of an eth_getLogs request. */
+    private boolean isRangeRejected(String msg) {
+        if (msg == null || isRateLimited(msg)) return false;
+        String m = msg.toLowerCase(Locale.ROOT);
+        return m.contains("range") ||
+                m.contains("more than") ||
+                m.contains("too many") ||
+                m.contains("too large") ||
+                m.contains("limit exceeded") ||
+                m.contains("10000");
+    }
+
     /**
      * Heuristics to detect RPC rate-limit responses (public RPCs vary in messages).
      */
@@ -2,8 +2,10 @@
 package com.defistat.web3;
 
 import com.defistat.web3.dto.merkl.MerklOpportunity;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -14,12 +16,26 @@ import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.InputStream;
 import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * Blocking client for Merkl API using RestTemplate.
- * Supports flexible JSON shapes: array root, {data:[...]}, or single object.
+ * Supports flexible JSON shapes: array root, {data:[...]}, or single object,
+ * decoded in one streaming pass and handed out item by item.
+ * Opportunity lists are paged (page/items), fetched with bounded parallelism and, for ingest,
+ * requested conditionally so unchanged pages are skipped. Validators of a conditional fetch are kept
+ * only once the caller commits it, i.e. after the pages it received have been persisted.
  */
 @Component
 @RequiredArgsConstructor
@@ -31,43 +47,180 @@ public class MerklClient {
     @Value("${app.merkl.baseUrl:https://api.merkl.xyz}")
     private String baseUrl;
 
+    /** Items per page requested from /v4/opportunities. */
+    @Value("${app.merkl.pageSize:100}")
+    private int pageSize;
+
+    /** Pages fetched concurrently after the first one. */
+    @Value("${app.merkl.parallelPages:4}")
+    private int parallelPages;
+
     private final ObjectMapper mapper = new ObjectMapper()
             .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 
-    private static final TypeReference<List<MerklOpportunity>> LIST_REF = new TypeReference<>() {};
+    /** Safety stop in case the API keeps returning full pages. */
+    private static final int MAX_PAGES = 1000;
+
+    /** Validators older than this are not sent, so every page is fully re-read now and then. */
+    private static final Duration VALIDATOR_TTL = Duration.ofHours(1);
+
+    /** Conditional-request validators of the last committed 200 response per (chain, protocol, page). */
+    private record Validator(String etag, String lastModified, int items, Instant storedAt) {}
+
+    /** Outcome of one page: item count (from cache when not modified). */
+    private record PageResult(int items, boolean notModified) {}
+
+    private final Map<String, Validator> validators = new ConcurrentHashMap<>();
+
+    /**
+     * Result of one conditional fetch: the number of opportunities passed to the sink, plus the validators
+     * of the pages it received. They are only pending: {@link #commit()} once those opportunities are stored;
+     * a run that is never committed leaves the previous validators in place, so its pages are re-read next time.
+     */
+    public final class Fetch {
+        private final Map<String, Validator> received = new ConcurrentHashMap<>();
+        private final Set<String> unvalidated = ConcurrentHashMap.newKeySet();
+        private int items;
+
+        public int items() {
+            return items;
+        }
+
+        public void commit() {
+            unvalidated.forEach(validators::remove);
+            validators.putAll(received);
+        }
+    }
 
     /**
      * Fetch all opportunities for a given chain/protocol (blocking).
      * Adjust query param names ("type" vs "protocol") to match Merkl's API.
      */
     public List<MerklOpportunity> findAll(String chainId, String protocol) {
+        List<MerklOpportunity> out = new ArrayList<>();
+        fetchPages(chainId, protocol, null, out::add);
+        return out;
+    }
+
+    /**
+     * Stream the opportunities of a given chain/protocol to {@code sink} as they are decoded
+     * from the response stream (one item in memory at a time).
+     * Pages are requested conditionally (ETag / Last-Modified): a page that is unchanged since the
+     * last committed call comes back as 304 and its items are NOT passed to sink again.
+     * The sink is called by one thread at a time.
+     * @return the fetch; call {@link Fetch#commit()} after its opportunities are persisted
+     */
+    public Fetch forEach(String chainId, String protocol, Consumer<MerklOpportunity> sink) {
+        Fetch fetch = new Fetch();
+        fetch.items = fetchPages(chainId, protocol, fetch, sink);
+        return fetch;
+    }
+
+    /**
+     * Page 0 first; if it is full, the following pages are fetched in waves of parallelPages until a short page.
+     * A first page larger than pageSize means the API ignored paging, so it already holds everything.
+     * With {@code fetch} == null pages are requested unconditionally and no validators are recorded.
+     */
+    private int fetchPages(String chainId, String protocol, Fetch fetch, Consumer<MerklOpportunity> sink) {
         Assert.hasText(chainId, "chainId required");
         Assert.hasText(protocol, "protocol required");
 
+        Object lock = new Object();
+        AtomicInteger decoded = new AtomicInteger();
+        Consumer<MerklOpportunity> serialized = o -> {
+            synchronized (lock) {
+                sink.accept(o);
+            }
+            decoded.incrementAndGet();
+        };
+
+        PageResult first = fetchPage(chainId, protocol, 0, fetch, serialized);
+        int unchanged = first.notModified() ? 1 : 0;
+        int pages = 1;
+        if (first.items() == pageSize) {
+            int wave = Math.max(1, parallelPages);
+            try (ExecutorService exec = Executors.newFixedThreadPool(wave, Thread.ofVirtual().factory())) {
+                boolean more = true;
+                for (int page = 1; more && page < MAX_PAGES; page += wave) {
+                    List<Future<PageResult>> futures = new ArrayList<>(wave);
+                    for (int i = 0; i < wave; i++) {
+                        int p = page + i;
+                        futures.add(exec.submit(() -> fetchPage(chainId, protocol, p, fetch, serialized)));
+                    }
+                    for (Future<PageResult> f : futures) {
+                        PageResult r = await(f);
+                        pages++;
+                        if (r.notModified()) unchanged++;
+                        if (r.items() < pageSize) more = false;
+                    }
+                }
+            }
+        }
+        log.debug("[Merkl] chain={} type={} pages={} unchanged={} items={}", chainId, protocol, pages, unchanged, decoded.get());
+        return decoded.get();
+    }
+
+    private PageResult fetchPage(String chainId, String protocol, int page, Fetch fetch,
+                                 Consumer<MerklOpportunity> sink) {
         URI uri = UriComponentsBuilder.fromHttpUrl(baseUrl)
                 .path("/v4/opportunities")
                 .queryParam("chainId", chainId)
                 .queryParam("type", protocol) // e.g., EULER
+                .queryParam("page", page)
+                .queryParam("items", pageSize)
                 .build(true).toUri();
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
-        headers.set(HttpHeaders.USER_AGENT, "defistat/merkl-client");
-        HttpEntity<Void> req = new HttpEntity<>(headers);
+        String key = chainId + "|" + protocol + "|" + page;
+        Validator cached = validators.get(key);
+        Validator v = fetch != null && cached != null
+                && Duration.between(cached.storedAt(), Instant.now()).compareTo(VALIDATOR_TTL) < 0 ? cached : null;
 
         try {
-            ResponseEntity<String> resp = merklRestTemplate.exchange(uri, HttpMethod.GET, req, String.class);
-            if (!resp.getStatusCode().is2xxSuccessful() || resp.getBody() == null) {
-                throw new RuntimeException("Merkl HTTP " + resp.getStatusCode());
-            }
-            return decode(resp.getBody());
+            return merklRestTemplate.execute(uri, HttpMethod.GET,
+                    request -> {
+                        HttpHeaders h = request.getHeaders();
+                        h.setAccept(List.of(MediaType.APPLICATION_JSON));
+                        h.set(HttpHeaders.USER_AGENT, "defistat/merkl-client");
+                        if (v != null && v.etag() != null) h.setIfNoneMatch(v.etag());
+                        if (v != null && v.lastModified() != null) h.set(HttpHeaders.IF_MODIFIED_SINCE, v.lastModified());
+                    },
+                    response -> {
+                        if (response.getStatusCode().value() == HttpStatus.NOT_MODIFIED.value() && v != null) {
+                            return new PageResult(v.items(), true);
+                        }
+                        if (!response.getStatusCode().is2xxSuccessful()) {
+                            throw new RuntimeException("Merkl HTTP " + response.getStatusCode());
+                        }
+                        int n = decode(response.getBody(), sink);
+                        if (fetch == null) return new PageResult(n, false);
+                        String etag = response.getHeaders().getETag();
+                        String lastModified = response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED);
+                        if (etag != null || lastModified != null) {
+                            fetch.received.put(key, new Validator(etag, lastModified, n, Instant.now()));
+                        } else {
+                            fetch.unvalidated.add(key);
+                        }
+                        return new PageResult(n, false);
+                    });
         } catch (HttpStatusCodeException httpEx) {
             throw new RuntimeException("Merkl HTTP error " + httpEx.getStatusCode() + ": " + httpEx.getResponseBodyAsString(), httpEx);
+        } catch (RuntimeException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Merkl call failed: " + e.getMessage(), e);
         }
     }
 
+    private static <T> T await(Future<T> f) {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while fetching Merkl pages", e);
+        }
+    }
+
     /**
      * Fetch by identifier (target vault address). Useful for on-demand lookups.
      */
@@ -78,17 +231,26 @@ public class MerklClient {
                 .queryParam("identifier", identifier)
                 .build(true).toUri();
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
-        headers.set(HttpHeaders.USER_AGENT, "defistat/merkl-client");
-        HttpEntity<Void> req = new HttpEntity<>(headers);
+        List<MerklOpportunity> out = new ArrayList<>();
+        stream(uri, out::add);
+        return out;
+    }
 
+    /** GET and decode the body straight from the InputStream (no String buffering). */
+    private int stream(URI uri, Consumer<MerklOpportunity> sink) {
         try {
-            ResponseEntity<String> resp = merklRestTemplate.exchange(uri, HttpMethod.GET, req, String.class);
-            if (!resp.getStatusCode().is2xxSuccessful() || resp.getBody() == null) {
-                throw new RuntimeException("Merkl HTTP " + resp.getStatusCode());
-            }
-            return decode(resp.getBody());
+            Integer n = merklRestTemplate.execute(uri, HttpMethod.GET,
+                    request -> {
+                        request.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON));
+                        request.getHeaders().set(HttpHeaders.USER_AGENT, "defistat/merkl-client");
+                    },
+                    response -> {
+                        if (!response.getStatusCode().is2xxSuccessful()) {
+                            throw new RuntimeException("Merkl HTTP " + response.getStatusCode());
+                        }
+                        return decode(response.getBody(), sink);
+                    });
+            return n == null ? 0 : n;
         } catch (HttpStatusCodeException httpEx) {
             throw new RuntimeException("Merkl HTTP error " + httpEx.getStatusCode() + ": " + httpEx.getResponseBodyAsString(), httpEx);
         } catch (Exception e) {
@@ -96,24 +258,54 @@ public class MerklClient {
         }
     }
 
-    /** Flexible JSON decoder: array root, {data:[...]}, or single object. */
-    private List<MerklOpportunity> decode(String json) {
-        try {
-            JsonNode root = mapper.readTree(json);
-            if (root == null || root.isNull()) return List.of();
-            if (root.isArray()) {
-                return mapper.readValue(json, LIST_REF);
-            } else if (root.isObject()) {
-                JsonNode data = root.get("data");
-                if (data != null && data.isArray()) {
-                    return mapper.readerFor(LIST_REF).readValue(data);
+    /**
+     * Flexible single-pass JSON decoder: array root, {data:[...]}, or single object.
+     * The shape is detected from the tokens as they arrive; root fields seen before "data" are buffered
+     * only so a single-object body can still be bound once it turns out to have no data array.
+     */
+    private int decode(InputStream in, Consumer<MerklOpportunity> sink) {
+        try (JsonParser p = mapper.getFactory().createParser(in)) {
+            JsonToken t = p.nextToken();
+            if (t == JsonToken.START_ARRAY) return readArray(p, sink);
+            if (t != JsonToken.START_OBJECT) return 0;
+
+            TokenBuffer root = new TokenBuffer(mapper, false);
+            root.writeStartObject();
+            boolean dataSeen = false;
+            int count = 0;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String name = p.currentName();
+                JsonToken value = p.nextToken();
+                if (!dataSeen && "data".equals(name) && value == JsonToken.START_ARRAY) {
+                    dataSeen = true;
+                    count = readArray(p, sink);
+                } else if (!dataSeen) {
+                    root.writeFieldName(name);
+                    root.copyCurrentStructure(p);
+                } else {
+                    p.skipChildren();
                 }
-                MerklOpportunity one = mapper.treeToValue(root, MerklOpportunity.class);
-                return one != null ? List.of(one) : List.of();
             }
-            return List.of();
+            if (dataSeen) return count;
+
+            root.writeEndObject();
+            MerklOpportunity one = mapper.readValue(root.asParser(), MerklOpportunity.class);
+            if (one == null) return 0;
+            sink.accept(one);
+            return 1;
         } catch (Exception e) {
             throw new RuntimeException("Merkl decode error: " + e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+
+    private int readArray(JsonParser p, Consumer<MerklOpportunity> sink) throws java.io.IOException {
+        int count = 0;
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            MerklOpportunity o = mapper.readValue(p, MerklOpportunity.class);
+            if (o == null) continue;
+            sink.accept(o);
+            count++;
+        }
+        return count;
+    }
+}
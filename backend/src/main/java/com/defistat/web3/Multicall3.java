@@ -0,0 +1,124 @@
+package com.defistat.web3;
+
+import org.web3j.crypto.Hash;
+import org.web3j.utils.Numeric;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal ABI codec for Multicall3.aggregate3((address target, bool allowFailure, bytes callData)[]).
+ *
+ * The layout is fixed, so we write/read the ABI words directly instead of going through
+ * web3j's generic struct encoder (which is slow and brittle for dynamic struct arrays).
+ * Every call is sent with allowFailure = true, so one reverting vault does not fail the batch.
+ */
+final class Multicall3 {
+
+    private static final String AGGREGATE3_SELECTOR =
+            Hash.sha3String("aggregate3((address,bool,bytes)[])").substring(0, 10);
+
+    private static final int WORD = 32;
+
+    private Multicall3() {}
+
+    /** One sub-call: target contract and hex calldata (0x-prefixed). */
+    record Call(String target, String callData) {}
+
+    /** One sub-result: success flag and raw hex return data (0x-prefixed). */
+    record Result(boolean success, String returnData) {
+
+        /** True when the sub-call succeeded and returned at least one ABI word. */
+        boolean hasWords(int words) {
+            return success && EulerCalls.hasWords(returnData, words);
+        }
+    }
+
+    /**
+     * Encode aggregate3 calldata for the given calls.
+     */
+    static String encodeAggregate3(List<Call> calls) {
+        int n = calls.size();
+        byte[][] data = new byte[n][];
+        int bodyWords = 0;
+        for (int i = 0; i < n; i++) {
+            data[i] = Numeric.hexStringToByteArray(calls.get(i).callData());
+            bodyWords += 4 + paddedWords(data[i].length);
+        }
+
+        StringBuilder sb = new StringBuilder(10 + (2 + n + bodyWords) * WORD * 2);
+        sb.append(AGGREGATE3_SELECTOR);
+        appendWord(sb, WORD);   // offset of the array argument
+        appendWord(sb, n);      // array length
+
+        // heads: offsets of each tuple, relative to the start of the heads area
+        long offset = (long) WORD * n;
+        for (int i = 0; i < n; i++) {
+            appendWord(sb, offset);
+            offset += (long) WORD * (4 + paddedWords(data[i].length));
+        }
+
+        // tails: (address, bool, offset-of-bytes, bytes.length, bytes...)
+        for (int i = 0; i < n; i++) {
+            appendAddress(sb, calls.get(i).target());
+            appendWord(sb, 1);          // allowFailure = true
+            appendWord(sb, 3L * WORD);  // bytes start right after the three head words
+            appendWord(sb, data[i].length);
+            sb.append(Numeric.toHexStringNoPrefix(data[i]));
+            int pad = paddedWords(data[i].length) * WORD - data[i].length;
+            sb.append("0".repeat(pad * 2));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Decode aggregate3 return data into per-call results (same order as the encoded calls).
+     */
+    static List<Result> decodeAggregate3(String hex) {
+        byte[] b = Numeric.hexStringToByteArray(hex);
+        int array = readInt(b, 0);
+        int n = readInt(b, array);
+        int heads = array + WORD;
+
+        List<Result> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int tuple = heads + readInt(b, heads + WORD * i);
+            boolean success = readInt(b, tuple) != 0;
+            int bytesAt = tuple + readInt(b, tuple + WORD);
+            int len = readInt(b, bytesAt);
+            if (bytesAt + WORD + len > b.length) {
+                throw new IllegalArgumentException("aggregate3 result truncated at call #" + i);
+            }
+            out.add(new Result(success, Numeric.toHexString(b, bytesAt + WORD, len, true)));
+        }
+        return out;
+    }
+
+    // ---------------------------- Internals ----------------------------
+
+    private static int paddedWords(int len) {
+        return (len + WORD - 1) / WORD;
+    }
+
+    private static void appendWord(StringBuilder sb, long v) {
+        String h = Long.toHexString(v);
+        sb.append("0".repeat(64 - h.length())).append(h);
+    }
+
+    private static void appendAddress(StringBuilder sb, String addr) {
+        String h = Numeric.cleanHexPrefix(addr).toLowerCase();
+        if (h.length() != 40) throw new IllegalArgumentException("invalid address: " + addr);
+        sb.append("0".repeat(24)).append(h);
+    }
+
+    /** Offsets/lengths always fit into the low 4 bytes of an ABI word. */
+    private static int readInt(byte[] b, int off) {
+        if (off < 0 || off + WORD > b.length) {
+            throw new IllegalArgumentException("aggregate3 result truncated at offset " + off);
+        }
+        return ((b[off + 28] & 0xff) << 24)
+                | ((b[off + 29] & 0xff) << 16)
+                | ((b[off + 30] & 0xff) << 8)
+                | (b[off + 31] & 0xff);
+    }
+}
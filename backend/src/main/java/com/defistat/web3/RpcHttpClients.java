@@ -0,0 +1,167 @@
+package com.defistat.web3;
+
+import com.defistat.config.AppProps;
+import okhttp3.ConnectionPool;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.GzipSink;
+import okio.Okio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * OkHttp clients for Web3j endpoints.
+ *
+ * One client per network: all endpoints of the network share its connection pool (so parallel vault reads
+ * reuse warm TLS connections instead of re-handshaking). In-flight requests are capped per network and per host
+ * by an interceptor: web3j sends with the synchronous Call.execute(), which OkHttp's Dispatcher limits ignore.
+ * HTTP/2 is negotiated via ALPN where the provider supports it, and gzip responses are
+ * decoded transparently by OkHttp; gzip request bodies are opt-in since not every RPC accepts them.
+ */
+final class RpcHttpClients {
+
+    private RpcHttpClients() {}
+
+    static OkHttpClient forNetwork(OkHttpClient base, AppProps.Http cfg) {
+        OkHttpClient.Builder b = base.newBuilder()
+                .connectionPool(new ConnectionPool(cfg.getMaxIdleConnections(), cfg.getKeepAliveSeconds(), TimeUnit.SECONDS))
+                .addInterceptor(new ConcurrencyLimitInterceptor(cfg.getMaxRequests(), cfg.getMaxRequestsPerHost()))
+                .connectTimeout(cfg.getConnectTimeoutMs(), TimeUnit.MILLISECONDS)
+                .readTimeout(cfg.getReadTimeoutMs(), TimeUnit.MILLISECONDS)
+                .writeTimeout(cfg.getReadTimeoutMs(), TimeUnit.MILLISECONDS)
+                .retryOnConnectionFailure(true);
+        if (cfg.isGzipRequests()) b.addInterceptor(new GzipRequestInterceptor());
+        return b.build();
+    }
+
+    /**
+     * Caps in-flight requests of one network, overall and per host. A slot is taken before the request is sent
+     * and given back when the response body is closed (or the call fails), so it covers the whole exchange.
+     * Callers wait for a slot; RPC attempts run on virtual threads, so waiting parks nothing expensive.
+     */
+    static final class ConcurrencyLimitInterceptor implements Interceptor {
+        private final Semaphore total;
+        private final int perHost;
+        private final Map<String, Semaphore> byHost = new ConcurrentHashMap<>();
+
+        ConcurrencyLimitInterceptor(int maxRequests, int maxRequestsPerHost) {
+            this.total = new Semaphore(Math.max(1, maxRequests), true);
+            this.perHost = Math.max(1, maxRequestsPerHost);
+        }
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Semaphore host = byHost.computeIfAbsent(chain.request().url().host(), h -> new Semaphore(perHost, true));
+            // host slot first, so requests queued on a busy host do not hold network-wide slots
+            acquire(host);
+            try {
+                acquire(total);
+            } catch (IOException e) {
+                host.release();
+                throw e;
+            }
+            AtomicBoolean released = new AtomicBoolean();
+            Runnable release = () -> {
+                if (released.compareAndSet(false, true)) {
+                    total.release();
+                    host.release();
+                }
+            };
+
+            Response response;
+            try {
+                response = chain.proceed(chain.request());
+            } catch (IOException | RuntimeException e) {
+                release.run();
+                throw e;
+            }
+            ResponseBody body = response.body();
+            if (body == null) {
+                release.run();
+                return response;
+            }
+            return response.newBuilder().body(new ReleasingBody(body, release)).build();
+        }
+
+        private static void acquire(Semaphore s) throws IOException {
+            try {
+                s.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for an RPC connection slot");
+            }
+        }
+    }
+
+    /** Response body that runs {@code onClose} once its source is closed. */
+    private static final class ReleasingBody extends ResponseBody {
+        private final ResponseBody delegate;
+        private final BufferedSource source;
+
+        ReleasingBody(ResponseBody delegate, Runnable onClose) {
+            this.delegate = delegate;
+            this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        onClose.run();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+
+    /** Compresses request bodies (JSON-RPC payloads compress ~5-10x for large batches). */
+    static final class GzipRequestInterceptor implements Interceptor {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request original = chain.request();
+            RequestBody body = original.body();
+            if (body == null || original.header("Content-Encoding") != null) {
+                return chain.proceed(original);
+            }
+
+            Buffer buffer = new Buffer();
+            try (BufferedSink gzip = Okio.buffer(new GzipSink(buffer))) {
+                body.writeTo(gzip);
+            }
+            RequestBody gzipped = RequestBody.create(buffer.readByteString(), body.contentType());
+            return chain.proceed(original.newBuilder()
+                    .header("Content-Encoding", "gzip")
+                    .method(original.method(), gzipped)
+                    .build());
+        }
+    }
+}
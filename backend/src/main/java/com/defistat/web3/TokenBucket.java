@@ -0,0 +1,54 @@
+package com.defistat.web3;
+
+/**
+ * Classic token bucket used to keep each RPC endpoint under its provider limit.
+ * Refills continuously at {@code rps} tokens per second up to {@code burst} tokens.
+ * A bucket with rps <= 0 is unlimited.
+ */
+final class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastRefill;
+
+    TokenBucket(double rps, int burst) {
+        this.tokensPerNano = rps > 0 ? rps / 1e9 : 0;
+        this.capacity = rps > 0 ? Math.max(1, burst > 0 ? burst : Math.ceil(rps)) : 0;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    boolean isUnlimited() {
+        return tokensPerNano == 0;
+    }
+
+    /** Take one token if available. */
+    synchronized boolean tryAcquire() {
+        if (isUnlimited()) return true;
+        refill();
+        if (tokens < 1) return false;
+        tokens -= 1;
+        return true;
+    }
+
+    /** Nanoseconds until one token is available (0 if available now). */
+    synchronized long nanosUntilToken() {
+        if (isUnlimited()) return 0;
+        refill();
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    /** Remaining capacity in 0..1 (unlimited = 1). */
+    synchronized double headroom() {
+        if (isUnlimited()) return 1;
+        refill();
+        return tokens / capacity;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,53 @@
+package com.defistat.web3;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers per (network, vault) which APY read path works, so later reads issue only that path's calls
+ * instead of paying for a reverting UtilsLens.getAPYs (plus warning) before the fallback every cycle.
+ * Entries expire after {@link #REPROBE_AFTER_MS}; an expired or unknown vault is probed again (lens, then direct).
+ * Only live reads write here, and a path is written off only on a confirmed revert (never on transport errors).
+ */
+final class VaultCapabilities {
+
+    enum ApyPath {
+        /** UtilsLens.getAPYs(vault) */
+        LENS,
+        /** eVault.borrowAPY_RAY() / supplyAPY_RAY() */
+        DIRECT,
+        /** Neither works; only utilization is read */
+        NONE
+    }
+
+    static final long REPROBE_AFTER_MS = 6 * 60 * 60 * 1000L;
+
+    private record Entry(ApyPath path, long probedAt) {}
+
+    private final Map<String, Entry> byVault = new ConcurrentHashMap<>();
+
+    /** Known working path, or null when the vault is unknown or due for a re-probe. */
+    ApyPath known(String network, String vault) {
+        Entry e = byVault.get(key(network, vault));
+        if (e == null || System.currentTimeMillis() - e.probedAt() > REPROBE_AFTER_MS) return null;
+        return e.path();
+    }
+
+    void record(String network, String vault, ApyPath path) {
+        String k = key(network, vault);
+        Entry prev = byVault.get(k);
+        // keep the probe time while the path is unchanged, so re-probing stays periodic
+        if (prev != null && prev.path() == path && System.currentTimeMillis() - prev.probedAt() <= REPROBE_AFTER_MS) return;
+        byVault.put(k, new Entry(path, System.currentTimeMillis()));
+    }
+
+    /** Forget a vault whose known path stopped working; its next read probes all paths. */
+    void invalidate(String network, String vault) {
+        byVault.remove(key(network, vault));
+    }
+
+    private static String key(String network, String vault) {
+        return network + ":" + vault.toLowerCase(Locale.ROOT);
+    }
+}
@@ -5,19 +5,34 @@ import com.defistat.config.AppProps;
 import com.defistat.web3.exception.RetryableRpcException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
 import org.springframework.stereotype.Component;
 import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthCall;
 import org.web3j.protocol.http.HttpService;
 
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 
 /**
  * Builds and manages multiple Web3j clients per network and fails over
  * between RPC endpoints on rate-limit or IO errors.
+ * The first endpoint of each call is picked by "power of two choices" over EWMA latency/error-rate
+ * (or plain round-robin, see AppProps.Network.rpcSelection); the rest follow as failover order.
+ * A background prober (AppProps.Network.probe) drives per-endpoint circuit breakers and demotes lagging endpoints.
  */
 @Component
 @RequiredArgsConstructor
@@ -26,28 +41,134 @@ public class Web3ClientFactory {
 
     private final AppProps props;
 
+    /** Closed = in rotation, open = skipped until a probe succeeds, half-open = trial in progress. */
+    private enum Circuit { CLOSED, OPEN, HALF_OPEN }
+
     /**
-     * Endpoint state with simple penalty window (circuit half-open).
+     * Endpoint state: circuit breaker, head/lag from the background prober,
+     * and EWMA latency / error-rate used for latency-aware selection.
      */
     private static class Endpoint {
         final String url;
         final Web3j web3j;
-        volatile Instant penaltyUntil = Instant.EPOCH;
+        /** Proactive provider limit (rps/burst from app.network.<net>.rpcUrls). */
+        final TokenBucket limiter;
+        /** With a prober, only a successful probe closes an open circuit; otherwise the next call is the trial. */
+        final boolean probed;
+        volatile Circuit circuit = Circuit.CLOSED;
+        volatile Instant openUntil = Instant.EPOCH;
+        /** Consecutive trips without a success; doubles the open window. */
+        private int trips;
+        /** Last head block seen by the prober; -1 until probed. */
+        volatile long headBlock = -1;
+        volatile long probeLatencyMs = -1;
+        /** Head lags the best endpoint of the network by more than probe.maxLagBlocks: tried last. */
+        volatile boolean lagging;
+        final AtomicBoolean probing = new AtomicBoolean();
+        /** EWMA of call latency in ms; negative until the first observation. */
+        volatile double ewmaLatencyMs = -1;
+        /** EWMA of failures (0 = always OK, 1 = always failing). */
+        volatile double ewmaErrorRate = 0;
+        /** Ring buffer of recent successful latencies (ms) for percentile-based hedging. */
+        private final long[] samples = new long[LATENCY_SAMPLES];
+        private int sampleCount;
+        private int sampleNext;
 
-        Endpoint(String url) {
-            this.url = url;
-            this.web3j = Web3j.build(new HttpService(url));
+        Endpoint(AppProps.RpcUrl cfg, OkHttpClient http, boolean probed) {
+            this.url = cfg.getUrl();
+            this.web3j = Web3j.build(new HttpService(url, http));
+            this.limiter = new TokenBucket(cfg.getRps(), cfg.getBurst());
+            this.probed = probed;
         }
 
         boolean isAvailable() {
-            return Instant.now().isAfter(penaltyUntil);
+            if (circuit == Circuit.CLOSED) return true;
+            return !probed && circuit == Circuit.OPEN && Instant.now().isAfter(openUntil);
+        }
+
+        /** Open the circuit; the window doubles with every consecutive trip, capped at MAX_OPEN. */
+        synchronized void penalize(Duration d) {
+            long ms = Math.min(d.toMillis() << Math.min(trips, 8), MAX_OPEN.toMillis());
+            trips++;
+            openUntil = Instant.now().plusMillis(ms);
+            if (circuit == Circuit.CLOSED) log.warn("[web3 circuit] {} opened for {}ms", url, ms);
+            circuit = Circuit.OPEN;
+        }
+
+        synchronized void close() {
+            if (circuit != Circuit.CLOSED) log.info("[web3 circuit] {} closed", url);
+            circuit = Circuit.CLOSED;
+            trips = 0;
+        }
+
+        /** Open window elapsed: move to half-open and claim the trial probe. */
+        synchronized boolean dueForProbe() {
+            if (circuit == Circuit.OPEN && Instant.now().isAfter(openUntil)) circuit = Circuit.HALF_OPEN;
+            return circuit != Circuit.OPEN && probing.compareAndSet(false, true);
+        }
+
+        synchronized void record(boolean ok, long latencyMs) {
+            if (ok && !probed && circuit != Circuit.CLOSED) close();
+            ewmaLatencyMs = ewmaLatencyMs < 0 ? latencyMs : EWMA_ALPHA * latencyMs + (1 - EWMA_ALPHA) * ewmaLatencyMs;
+            ewmaErrorRate = EWMA_ALPHA * (ok ? 0 : 1) + (1 - EWMA_ALPHA) * ewmaErrorRate;
+            if (ok) {
+                samples[sampleNext] = latencyMs;
+                sampleNext = (sampleNext + 1) % samples.length;
+                sampleCount = Math.min(sampleCount + 1, samples.length);
+            }
+        }
+
+        /** Latency percentile (q in 0..1) over recent successes; -1 until enough samples are collected. */
+        synchronized long latencyPercentileMs(double q) {
+            if (sampleCount < MIN_LATENCY_SAMPLES) return -1;
+            long[] sorted = Arrays.copyOf(samples, sampleCount);
+            Arrays.sort(sorted);
+            int i = (int) Math.ceil(Math.min(1.0, Math.max(0.0, q)) * sampleCount) - 1;
+            return sorted[Math.max(0, i)];
+        }
+
+        /** Lower is better; unknown latency scores optimistic so fresh endpoints get sampled. */
+        double score() {
+            double lat = ewmaLatencyMs < 0 ? 0 : ewmaLatencyMs;
+            return (lat + 1) * (1 + ERROR_WEIGHT * ewmaErrorRate);
+        }
+    }
+
+    /** Retryable failure on one endpoint; the loop moves on to the next one. */
+    private static final class EndpointFailure extends RuntimeException {
+        EndpointFailure(Throwable cause) {
+            super(cause.getMessage(), cause, false, false);
+        }
+    }
+
+    /** Retry-budget style cap on hedges: every request earns budgetRatio tokens, every hedge spends one. */
+    private static final class HedgeBudget {
+        private static final double MAX_TOKENS = 10;
+        private double tokens = MAX_TOKENS;
+
+        synchronized void onRequest(double ratio) {
+            tokens = Math.min(MAX_TOKENS, tokens + ratio);
         }
 
-        void penalize(Duration d) {
-            penaltyUntil = Instant.now().plus(d);
+        synchronized boolean tryHedge() {
+            if (tokens < 1) return false;
+            tokens -= 1;
+            return true;
         }
     }
 
+    private static final int LATENCY_SAMPLES = 128;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+    private static final double EWMA_ALPHA = 0.2;
+    /** A fully failing endpoint looks 10x slower than its latency. */
+    private static final double ERROR_WEIGHT = 10;
+
+    // backoff grows per failover round, and penalizes an endpoint for a short window
+    private static final Duration BASE_BACKOFF = Duration.ofMillis(400);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(5);
+    private static final Duration PENALTY = Duration.ofSeconds(20);
+    private static final Duration MAX_OPEN = Duration.ofMinutes(5);
+
     /**
      * Network -> endpoints ring
      */
@@ -56,6 +177,17 @@ public class Web3ClientFactory {
      * Network -> round-robin index
      */
     private final Map<String, Integer> rrIndex = new ConcurrentHashMap<>();
+    /**
+     * Network -> hedge budget
+     */
+    private final Map<String, HedgeBudget> hedgeBudgets = new ConcurrentHashMap<>();
+    /** Base HTTP client the per-network clients are derived from. */
+    private final OkHttpClient baseHttp = new OkHttpClient();
+    /** Runs RPC attempts; virtual threads since every attempt is a blocking HTTP call. */
+    private final ExecutorService rpcExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    /** Schedules retry rounds and per-call deadlines without parking caller threads. */
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("rpc-retry").daemon().factory());
 
     // ----- public helpers for ancillary lenses (if you kept them here) -----
     public String getUtilsLens(String network) {
@@ -63,6 +195,14 @@ public class Web3ClientFactory {
         return net.getUtilsLens();
     }
 
+    public AppProps.Multicall getMulticall(String network) {
+        return props.require(network).getMulticall();
+    }
+
+    public AppProps.RpcBatch getRpcBatch(String network) {
+        return props.require(network).getRpcBatch();
+    }
+
     // ----- core failover executor -----
 
     /**
@@ -73,67 +213,433 @@ public class Web3ClientFactory {
      * @param <T>     return type
      */
     public <T> T executeWithFailover(String network, Function<Web3j, T> fn) {
+        return executeWithFailover(network, fn, false);
+    }
+
+    /**
+     * Execute a function against Web3j with RPC failover and, for idempotent reads, optional hedging:
+     * if the primary endpoint has not answered within the configured percentile of its observed latency,
+     * the same read is fired at the next healthy endpoint and the first successful answer wins.
+     * Duplicate load is capped by a per-network hedge budget (AppProps.Network.hedge).
+     * Blocks the caller only while waiting for the result; see {@link #executeWithFailoverAsync}.
+     *
+     * @param idempotent true only for pure reads (eth_call, eth_blockNumber, ...) that are safe to send twice
+     */
+    public <T> T executeWithFailover(String network, Function<Web3j, T> fn, boolean idempotent) {
+        return await(executeWithFailoverAsync(network, fn, idempotent));
+    }
+
+    /**
+     * Asynchronous failover: attempts run on virtual threads, switching to another healthy endpoint
+     * happens immediately, and only when no endpoint is left the next round is scheduled after a backoff
+     * (or when the earliest penalty window ends). The whole call is bounded by AppProps.Network.failover.deadlineMs.
+     */
+    public <T> CompletableFuture<T> executeWithFailoverAsync(String network, Function<Web3j, T> fn, boolean idempotent) {
         List<Endpoint> ring = getOrInit(network);
-        if (ring.isEmpty()) throw new IllegalStateException("No RPC URLs configured for network: " + network);
+        if (ring.isEmpty()) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("No RPC URLs configured for network: " + network));
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        new FailoverCall<>(network, ring, fn, idempotent, result).start();
+        return result;
+    }
 
-        final int total = ring.size();
-        int start = rrIndex.compute(network, (k, v) -> v == null ? 0 : (v + 1) % total);
-        int tried = 0;
+    /**
+     * State of one failover call. At most one attempt (or one hedged pair) is in flight at a time,
+     * so the fields are only touched sequentially (executor hand-off gives happens-before).
+     */
+    private final class FailoverCall<T> {
+        final String network;
+        final List<Endpoint> ring;
+        final Function<Web3j, T> fn;
+        final boolean idempotent;
+        final CompletableFuture<T> result;
+        final AppProps.Failover cfg;
+        final long deadlineNanos;
 
-        // backoff grows per attempt, and penalizes an endpoint for a short window
-        final Duration baseBackoff = Duration.ofMillis(400);
-        final Duration maxBackoff = Duration.ofSeconds(5);
-        final Duration penalty = Duration.ofSeconds(20);
+        List<Endpoint> order;
+        int next;
+        int round;
+        Throwable last;
 
-        Throwable last = null;
+        FailoverCall(String network, List<Endpoint> ring, Function<Web3j, T> fn,
+                     boolean idempotent, CompletableFuture<T> result) {
+            this.network = network;
+            this.ring = ring;
+            this.fn = fn;
+            this.idempotent = idempotent;
+            this.result = result;
+            this.cfg = props.require(network).getFailover();
+            this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(cfg.getDeadlineMs());
+        }
 
-        while (tried < total) {
-            int idx = (start + tried) % total;
-            Endpoint ep = ring.get(idx);
+        void start() {
+            ScheduledFuture<?> timer = retryScheduler.schedule(() -> result.completeExceptionally(new RuntimeException(
+                    "RPC deadline of " + cfg.getDeadlineMs() + "ms exceeded for network=" + network, last)),
+                    cfg.getDeadlineMs(), TimeUnit.MILLISECONDS);
+            result.whenComplete((v, e) -> timer.cancel(false));
 
-            if (!ep.isAvailable()) {
-                tried++;
-                continue;
-            }
+            order = attemptOrder(network, ring);
+            next = 0;
+            if (!tryHedgedStart()) runNext();
+        }
 
-            try {
-                T out = fn.apply(ep.web3j);
-                // success: remember index for next round-robin start
-                rrIndex.put(network, idx);
-                return out;
-            } catch (RetryableRpcException ex) {
-                last = ex;
-                log.warn("[web3 failover] Retryable on {}: {}", ep.url, ex.getMessage());
-                // penalize endpoint for a short time window
-                ep.penalize(penalty);
-            } catch (Exception ex) {
-                last = ex;
-                // IO or transport errors are considered retryable to next endpoint
-                String msg = ex.getMessage() == null ? "" : ex.getMessage().toLowerCase(Locale.ROOT);
-                if (isRetryableTransport(msg)) {
-                    log.warn("[web3 failover] Transport retryable on {}: {}", ep.url, ex.toString());
-                    ep.penalize(penalty);
-                } else {
-                    // non-retryable (e.g., contract revert) -> fail fast
-                    log.error("[web3 failover] Non-retryable on {}: {}", ep.url, ex.toString());
-                    throw ex;
+        /** First attempt of an idempotent read may be hedged across the two best healthy endpoints. */
+        private boolean tryHedgedStart() {
+            AppProps.Hedge hedge = props.require(network).getHedge();
+            if (!idempotent || !hedge.isEnabled()) return false;
+            List<Endpoint> healthy = order.stream().filter(Endpoint::isAvailable).limit(2).toList();
+            if (healthy.size() < 2 || healthy.get(0).latencyPercentileMs(hedge.getPercentile()) < 0) return false;
+            if (!healthy.get(0).limiter.tryAcquire()) return false;
+
+            rpcExecutor.execute(() -> {
+                try {
+                    result.complete(executeHedged(network, healthy.get(0), healthy.get(1), fn, hedge));
+                } catch (EndpointFailure f) {
+                    // primary failed (a failed hedge is penalized and skipped as unavailable)
+                    last = f.getCause();
+                    order.remove(healthy.get(0));
+                    runNext();
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
                 }
+            });
+            return true;
+        }
+
+        void runNext() {
+            if (result.isDone()) return;
+
+            // switch to the next healthy endpoint right away — no delay between different endpoints
+            while (next < order.size() && !order.get(next).isAvailable()) next++;
+            if (next < order.size()) {
+                Endpoint ep = order.get(next);
+                if (!ep.limiter.tryAcquire()) {
+                    // at its rate limit: spill to the remaining endpoint with the most headroom
+                    Endpoint spill = mostHeadroom(order, next + 1);
+                    if (spill != null && spill.limiter.tryAcquire()) {
+                        Collections.swap(order, next, order.indexOf(spill));
+                        ep = spill;
+                    } else {
+                        // everyone is at the limit: queue until the soonest token instead of tripping a 429
+                        long waitNanos = soonestTokenNanos(order, next);
+                        if (System.nanoTime() + waitNanos >= deadlineNanos) {
+                            fail();
+                            return;
+                        }
+                        retryScheduler.schedule(this::runNext, waitNanos, TimeUnit.NANOSECONDS);
+                        return;
+                    }
+                }
+                next++;
+
+                final Endpoint chosen = ep;
+                rpcExecutor.execute(() -> {
+                    try {
+                        T out = attempt(chosen, fn);
+                        // success: remember index for next round-robin start
+                        rrIndex.put(network, ring.indexOf(chosen));
+                        result.complete(out);
+                    } catch (EndpointFailure f) {
+                        last = f.getCause();
+                        runNext();
+                    } catch (Throwable t) {
+                        result.completeExceptionally(t);
+                    }
+                });
+                return;
             }
 
-            // simple exponential backoff with cap
+            // every endpoint tried (or penalized): schedule another round if the deadline allows
+            long waitMs = Math.max(backoffMs(round), millisUntilAnyAvailable(ring));
+            boolean inTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs) < deadlineNanos;
+            if (++round >= cfg.getMaxRounds() || !inTime) {
+                fail();
+                return;
+            }
+            log.debug("[web3 failover] all endpoints failed for {}, retry round {} in {}ms", network, round, waitMs);
+            retryScheduler.schedule(() -> {
+                order = attemptOrder(network, ring);
+                next = 0;
+                runNext();
+            }, waitMs, TimeUnit.MILLISECONDS);
+        }
+
+        private void fail() {
+            if (last instanceof RuntimeException re) result.completeExceptionally(re);
+            else result.completeExceptionally(new RuntimeException("All RPC endpoints failed for network=" + network, last));
+        }
+    }
+
+    /** Available endpoint from {@code from} on with the most rate-limit headroom, or null. */
+    private static Endpoint mostHeadroom(List<Endpoint> order, int from) {
+        Endpoint best = null;
+        double bestHeadroom = 0;
+        for (int i = from; i < order.size(); i++) {
+            Endpoint ep = order.get(i);
+            if (!ep.isAvailable()) continue;
+            double h = ep.limiter.headroom();
+            if (h > bestHeadroom) {
+                best = ep;
+                bestHeadroom = h;
+            }
+        }
+        return best;
+    }
+
+    private static long soonestTokenNanos(List<Endpoint> order, int from) {
+        long min = Long.MAX_VALUE;
+        for (int i = from; i < order.size(); i++) {
+            Endpoint ep = order.get(i);
+            if (ep.isAvailable()) min = Math.min(min, ep.limiter.nanosUntilToken());
+        }
+        return min;
+    }
+
+    /**
+     * One call on one endpoint: records latency/outcome, penalizes on retryable failures.
+     * Retryable failures are reported as EndpointFailure; non-retryable ones are rethrown as-is.
+     */
+    private <T> T attempt(Endpoint ep, Function<Web3j, T> fn) {
+        long t0 = System.nanoTime();
+        try {
+            T out = fn.apply(ep.web3j);
+            ep.record(true, elapsedMs(t0));
+            return out;
+        } catch (RetryableRpcException ex) {
+            ep.record(false, elapsedMs(t0));
+            log.warn("[web3 failover] Retryable on {}: {}", ep.url, ex.getMessage());
+            // penalize endpoint for a short time window
+            ep.penalize(PENALTY);
+            throw new EndpointFailure(ex);
+        } catch (Exception ex) {
+            // IO or transport errors are considered retryable to next endpoint
+            String msg = lower(ex.getMessage());
+            if (isRetryableTransport(msg)) {
+                ep.record(false, elapsedMs(t0));
+                log.warn("[web3 failover] Transport retryable on {}: {}", ep.url, ex.toString());
+                ep.penalize(PENALTY);
+                throw new EndpointFailure(ex);
+            }
+            // non-retryable (e.g., contract revert) -> fail fast; the endpoint itself answered fine
+            ep.record(true, elapsedMs(t0));
+            log.error("[web3 failover] Non-retryable on {}: {}", ep.url, ex.toString());
+            throw ex;
+        }
+    }
+
+    /**
+     * Run on primary; if it is slower than its latency percentile and the hedge budget allows,
+     * also run on secondary and return whichever succeeds first.
+     */
+    private <T> T executeHedged(String network, Endpoint primary, Endpoint secondary,
+                                Function<Web3j, T> fn, AppProps.Hedge cfg) {
+        long delayMs = Math.max(cfg.getMinDelayMs(), primary.latencyPercentileMs(cfg.getPercentile()));
+        HedgeBudget budget = hedgeBudgets.computeIfAbsent(network, k -> new HedgeBudget());
+        budget.onRequest(cfg.getBudgetRatio());
+
+        CompletableFuture<T> first = CompletableFuture.supplyAsync(() -> attempt(primary, fn), rpcExecutor);
+        try {
+            return first.get(delayMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException slow) {
+            if (!budget.tryHedge() || !secondary.limiter.tryAcquire()) return await(first);
+            log.debug("[web3 hedge] {} slower than {}ms, hedging on {}", primary.url, delayMs, secondary.url);
+            CompletableFuture<T> second = CompletableFuture.supplyAsync(() -> attempt(secondary, fn), rpcExecutor);
+            return await(firstSuccess(first, second));
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for RPC on " + primary.url, e);
+        }
+    }
+
+    private static <T> CompletableFuture<T> firstSuccess(CompletableFuture<T> a, CompletableFuture<T> b) {
+        CompletableFuture<T> out = new CompletableFuture<>();
+        AtomicInteger failed = new AtomicInteger();
+        BiConsumer<T, Throwable> onDone = (v, e) -> {
+            if (e == null) out.complete(v);
+            else if (failed.incrementAndGet() == 2) out.completeExceptionally(e);
+        };
+        a.whenComplete(onDone);
+        b.whenComplete(onDone);
+        return out;
+    }
+
+    private static <T> T await(CompletableFuture<T> f) {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static RuntimeException unwrap(Exception e) {
+        Throwable c = e.getCause();
+        while ((c instanceof CompletionException || c instanceof ExecutionException) && c.getCause() != null) {
+            c = c.getCause();
+        }
+        return c instanceof RuntimeException re ? re : new RuntimeException(c);
+    }
+
+    /**
+     * Execute many eth_call requests as JSON-RPC batch arrays (one HTTP POST per maxSize requests)
+     * and map responses back by request id.
+     * Each slice runs as its own failover call, with the same endpoint order, rate-limit queueing, retry rounds
+     * and deadline as single calls. Sub-requests that fail with a rate-limit/transport error (or are dropped)
+     * are re-sent on the next endpoint; successful ones and logical errors (reverts) are kept, so a retry
+     * never re-sends the whole batch.
+     *
+     * @param network network key (e.g. "base")
+     * @param txs     eth_call transactions
+     * @param block   block parameter for every call
+     * @return responses aligned with {@code txs}; an entry is null if it failed within every round and the deadline
+     */
+    public List<EthCall> executeCallBatchWithFailover(String network, List<Transaction> txs, DefaultBlockParameter block) {
+        if (getOrInit(network).isEmpty()) throw new IllegalStateException("No RPC URLs configured for network: " + network);
+
+        final int maxSize = Math.max(1, getRpcBatch(network).getMaxSize());
+        // written by attempt threads, possibly after a slice timed out
+        AtomicReferenceArray<EthCall> out = new AtomicReferenceArray<>(txs.size());
+        List<CompletableFuture<Void>> slices = new ArrayList<>();
+        for (int from = 0; from < txs.size(); from += maxSize) {
+            List<Integer> pending = new ArrayList<>(maxSize);
+            for (int i = from; i < Math.min(from + maxSize, txs.size()); i++) pending.add(i);
+            slices.add(executeWithFailoverAsync(network, web3 -> {
+                sendCallBatch(web3, pending, txs, block, out);
+                return null;
+            }, false));
+        }
+
+        for (CompletableFuture<Void> slice : slices) {
             try {
-                long pow = Math.min(tried, 4); // cap growth
-                long delay = Math.min(baseBackoff.toMillis() * (1L << pow), maxBackoff.toMillis());
-                Thread.sleep(delay);
-            } catch (InterruptedException ignore) {
-                Thread.currentThread().interrupt();
+                slice.join();
+            } catch (CompletionException e) {
+                log.warn("[web3 batch] slice gave up for network={}: {}", network, unwrap(e).getMessage());
             }
+        }
+        List<EthCall> result = new ArrayList<>(txs.size());
+        int missing = 0;
+        for (int i = 0; i < txs.size(); i++) {
+            EthCall call = out.get(i);
+            if (call == null) missing++;
+            result.add(call);
+        }
+        if (missing > 0) {
+            log.error("[web3 batch] {} sub-requests failed on all endpoints for network={}", missing, network);
+        }
+        return result;
+    }
+
+    /**
+     * Send the still-pending sub-requests of one slice as a JSON-RPC batch on one endpoint.
+     * Final answers go to {@code out} and leave {@code pending}; whatever is left (rate-limited, dropped, or the
+     * whole POST failed) is reported as RetryableRpcException so the failover call moves on with just those.
+     * Attempts of one failover call run one at a time, so {@code pending} needs no locking.
+     */
+    private void sendCallBatch(Web3j web3, List<Integer> pending, List<Transaction> txs,
+                               DefaultBlockParameter block, AtomicReferenceArray<EthCall> out) {
+        Map<Long, Integer> indexById = new HashMap<>(pending.size() * 2);
+        BatchResponse resp;
+        try {
+            BatchRequest batch = web3.newBatch();
+            for (int i : pending) {
+                Request<?, EthCall> req = web3.ethCall(txs.get(i), block);
+                indexById.put(req.getId(), i);
+                batch.add(req);
+            }
+            resp = batch.send();
+        } catch (Exception ex) {
+            // transport error, or the provider does not support batch arrays: the next endpoint gets the slice
+            throw new RetryableRpcException("JSON-RPC batch of " + pending.size() + " failed: " + ex.getMessage(), ex);
+        }
+
+        int sent = pending.size();
+        List<Integer> retry = new ArrayList<>();
+        for (Response<?> r : resp.getResponses()) {
+            Integer i = indexById.remove(r.getId());
+            if (i == null || !(r instanceof EthCall call)) continue;
+            if (call.hasError() && isRetryableTransport(lower(call.getError().getMessage()))) {
+                retry.add(i);
+            } else {
+                out.set(i, call);
+            }
+        }
+        // ids the provider silently dropped
+        retry.addAll(indexById.values());
+        pending.clear();
+        pending.addAll(retry);
+        if (!retry.isEmpty()) {
+            throw new RetryableRpcException(retry.size() + " of " + sent + " batched sub-requests rate-limited or dropped");
+        }
+    }
+
+    /**
+     * Order in which endpoints are tried for one call.
+     * P2C: primary = better-scored of two random available endpoints, then the rest by score.
+     * ROUND_ROBIN: ring rotated from the next round-robin index.
+     */
+    private List<Endpoint> attemptOrder(String network, List<Endpoint> ring) {
+        final int total = ring.size();
+        if (props.require(network).getRpcSelection() == AppProps.RpcSelection.ROUND_ROBIN || total == 1) {
+            int start = rrIndex.compute(network, (k, v) -> v == null ? 0 : (v + 1) % total);
+            List<Endpoint> order = new ArrayList<>(total);
+            for (int i = 0; i < total; i++) order.add(ring.get((start + i) % total));
+            return laggingLast(order);
+        }
+
+        // snapshot scores first: they are updated concurrently and must stay stable during the sort
+        Map<Endpoint, Double> scores = new IdentityHashMap<>(total);
+        for (Endpoint ep : ring) scores.put(ep, ep.score());
+        List<Endpoint> byScore = new ArrayList<>(ring);
+        byScore.sort(Comparator.comparingDouble(scores::get));
+
+        List<Endpoint> available = new ArrayList<>(total);
+        for (Endpoint ep : ring) if (ep.isAvailable() && !ep.lagging) available.add(ep);
+        if (available.size() >= 2) {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            Endpoint a = available.get(rnd.nextInt(available.size()));
+            Endpoint b;
+            do {
+                b = available.get(rnd.nextInt(available.size()));
+            } while (b == a);
+            Endpoint primary = scores.get(a) <= scores.get(b) ? a : b;
+            byScore.remove(primary);
+            byScore.add(0, primary);
+        }
+        return laggingLast(byScore);
+    }
 
-            tried++;
+    /** Stable move of lagging endpoints to the end: still a last resort, never a primary. */
+    private static List<Endpoint> laggingLast(List<Endpoint> order) {
+        List<Endpoint> out = new ArrayList<>(order.size());
+        for (Endpoint ep : order) if (!ep.lagging) out.add(ep);
+        for (Endpoint ep : order) if (ep.lagging) out.add(ep);
+        return out;
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /** Simple exponential backoff with cap, applied between failover rounds. */
+    private static long backoffMs(int round) {
+        long pow = Math.min(round, 4); // cap growth
+        return Math.min(BASE_BACKOFF.toMillis() * (1L << pow), MAX_BACKOFF.toMillis());
+    }
+
+    private static long millisUntilAnyAvailable(List<Endpoint> ring) {
+        Instant now = Instant.now();
+        long min = Long.MAX_VALUE;
+        for (Endpoint ep : ring) {
+            min = Math.min(min, Math.max(0, Duration.between(now, ep.openUntil).toMillis()));
         }
+        return min;
+    }
 
-        if (last instanceof RuntimeException re) throw re;
-        throw new RuntimeException("All RPC endpoints failed for network=" + network, last);
+    private static String lower(String msg) {
+        return msg == null ? "" : msg.toLowerCase(Locale.ROOT);
     }
 
     private boolean isRetryableTransport(String msg) {
@@ -146,7 +652,11 @@ public class Web3ClientFactory {
                 msg.contains("timeout") ||
                 msg.contains("connection") ||
                 msg.contains("refused") ||
-                msg.contains("unexpected end of stream");
+                msg.contains("unexpected end of stream") ||
+                // pinned block not yet seen by a lagging endpoint
+                msg.contains("header not found") ||
+                msg.contains("unknown block") ||
+                msg.contains("block not found");
     }
 
     private List<Endpoint> getOrInit(String network) {
@@ -154,10 +664,67 @@ public class Web3ClientFactory {
             var netCfg = props.require(net);
             var urls = netCfg.getRpcUrls();
             if (urls == null || urls.isEmpty()) return List.of();
+            // one pooled client per network, shared by all its endpoints
+            OkHttpClient http = RpcHttpClients.forNetwork(baseHttp, netCfg.getHttp());
+            AppProps.Probe probe = netCfg.getProbe();
             List<Endpoint> list = new ArrayList<>(urls.size());
-            for (String u : urls) list.add(new Endpoint(u));
-            log.info("Initialized {} RPC endpoints for {}: {}", list.size(), net, urls);
+            for (AppProps.RpcUrl u : urls) list.add(new Endpoint(u, http, probe.isEnabled()));
+            log.info("Initialized {} RPC endpoints for {}: {}", list.size(), net,
+                    list.stream().map(ep -> ep.url).toList());
+            if (probe.isEnabled()) {
+                long every = Math.max(1_000, probe.getIntervalMs());
+                retryScheduler.scheduleWithFixedDelay(() -> probeNetwork(net, list, probe), 0, every, TimeUnit.MILLISECONDS);
+            }
             return list;
         });
     }
+
+    // ----- background health prober -----
+
+    /**
+     * Probe every closed or half-open endpoint with eth_blockNumber (on virtual threads), then demote
+     * endpoints whose head lags the best one by more than probe.maxLagBlocks.
+     */
+    private void probeNetwork(String network, List<Endpoint> ring, AppProps.Probe cfg) {
+        List<CompletableFuture<Void>> probes = new ArrayList<>(ring.size());
+        for (Endpoint ep : ring) {
+            if (ep.dueForProbe()) probes.add(CompletableFuture.runAsync(() -> probe(ep), rpcExecutor));
+        }
+        CompletableFuture.allOf(probes.toArray(CompletableFuture[]::new))
+                .whenComplete((v, e) -> updateLag(network, ring, cfg.getMaxLagBlocks()));
+    }
+
+    private void probe(Endpoint ep) {
+        try {
+            // probes share the provider limit; skip a round rather than take capacity from real calls
+            if (!ep.limiter.tryAcquire()) return;
+            long t0 = System.nanoTime();
+            try {
+                var resp = ep.web3j.ethBlockNumber().send();
+                if (resp.hasError()) throw new IllegalStateException(resp.getError().getMessage());
+                ep.headBlock = resp.getBlockNumber().longValue();
+                ep.probeLatencyMs = elapsedMs(t0);
+                ep.close();
+            } catch (Exception ex) {
+                log.warn("[web3 probe] {} failed: {}", ep.url, ex.toString());
+                ep.penalize(PENALTY);
+            }
+        } finally {
+            ep.probing.set(false);
+        }
+    }
+
+    private static void updateLag(String network, List<Endpoint> ring, long maxLagBlocks) {
+        long best = -1;
+        for (Endpoint ep : ring) if (ep.circuit == Circuit.CLOSED) best = Math.max(best, ep.headBlock);
+        if (best < 0) return;
+        for (Endpoint ep : ring) {
+            boolean lagging = ep.headBlock >= 0 && best - ep.headBlock > maxLagBlocks;
+            if (lagging != ep.lagging) {
+                log.info("[web3 probe] {} {} on {} (head {} vs best {})",
+                        ep.url, lagging ? "demoted" : "restored", network, ep.headBlock, best);
+                ep.lagging = lagging;
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,237 @@
+package com.defistat.service;
+
+import com.defistat.api.dto.AssetDTO;
+import com.defistat.config.AppProps;
+import com.defistat.config.GraphQLClient;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Vault paging against a stub subgraph that, like graph-node, charges for every row it walks past:
+ * each page costs a fixed round trip plus time proportional to skip + first. Keyset (id_gt) pages seek
+ * to their start, so a full scan walks each row once; skip pages rescan everything before them.
+ */
+class AssetServicePagingTest {
+
+    private static final Logger log = LoggerFactory.getLogger(AssetServicePagingTest.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String NET = "test";
+    private static final String FIELD = "eulerVaults";
+    private static final int VAULTS = 4_000;
+    private static final int PAGE = 100;
+    /** Stub cost model: per request, and per row walked (skipped or returned). */
+    private static final long REQUEST_MICROS = 2_000;
+    private static final long ROW_MICROS = 10;
+
+    private static final Pattern FIELD_NAME = Pattern.compile("\\{\\s*(\\w+)\\s*\\(");
+    private static final Pattern FILTER = Pattern.compile("(id_gte|id_gt|id_lt):\"([^\"]*)\"");
+
+    private final List<String> ids = new ArrayList<>(VAULTS);
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicLong rowsWalked = new AtomicLong();
+    /** Latency the stub charged (its model of server-side work), in microseconds. */
+    private final AtomicLong charged = new AtomicLong();
+    private HttpServer server;
+    private String url;
+
+    @BeforeEach
+    void start() throws IOException {
+        Random rnd = new Random(1);
+        Set<String> seen = new HashSet<>();
+        while (seen.size() < VAULTS) {
+            byte[] b = new byte[20];
+            rnd.nextBytes(b);
+            StringBuilder sb = new StringBuilder("0x");
+            for (byte x : b) sb.append(String.format("%02x", x));
+            seen.add(sb.toString());
+        }
+        ids.addAll(seen);
+        ids.sort(null);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", this::handle);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    void keysetScanWalksEachRowOnceWhileSkipRescans() {
+        AssetService service = service(1);
+        service.resolveVaultField(NET);
+        requests.set(0);
+        rowsWalked.set(0);
+        charged.set(0);
+
+        long t0 = System.nanoTime();
+        List<AssetDTO> keyset = service.fetchAllAssets(NET, false, PAGE);
+        long keysetMs = (System.nanoTime() - t0) / 1_000_000;
+        int keysetRequests = requests.getAndSet(0);
+        long keysetRows = rowsWalked.getAndSet(0);
+        long keysetCharged = charged.getAndSet(0);
+
+        t0 = System.nanoTime();
+        List<String> skipped = skipScan();
+        long skipMs = (System.nanoTime() - t0) / 1_000_000;
+        int skipRequests = requests.getAndSet(0);
+        long skipRows = rowsWalked.getAndSet(0);
+        long skipCharged = charged.getAndSet(0);
+
+        log.info("{} vaults, {} per page: keyset {} requests / {} rows walked / {} ms charged / {} ms wall, "
+                        + "skip {} requests / {} rows walked / {} ms charged / {} ms wall",
+                VAULTS, PAGE, keysetRequests, keysetRows, keysetCharged / 1_000, keysetMs,
+                skipRequests, skipRows, skipCharged / 1_000, skipMs);
+
+        assertThat(keyset).extracting(a -> a.vaultAddress).containsExactlyElementsOf(ids);
+        assertThat(skipped).containsExactlyElementsOf(ids);
+        // both need one request per page (plus the empty page that ends the scan)
+        assertThat(keysetRequests).isEqualTo(VAULTS / PAGE + 1);
+        assertThat(skipRequests).isEqualTo(VAULTS / PAGE + 1);
+        // keyset walks every row once; skip walks sum(k * PAGE) extra rows, quadratic in the vault count
+        assertThat(keysetRows).isEqualTo(VAULTS);
+        assertThat(skipRows).isEqualTo(VAULTS + (long) PAGE * (VAULTS / PAGE) * (VAULTS / PAGE + 1) / 2);
+        // server-side cost: the same number of round trips, but skip pays for ~20x the rows
+        // (wall time also includes local HTTP overhead per request, so it is only logged)
+        assertThat(skipCharged).isGreaterThan(5 * keysetCharged);
+    }
+
+    @Test
+    void parallelRangesReturnEveryVaultOnce() {
+        AssetService service = service(4);
+        service.resolveVaultField(NET);
+        requests.set(0);
+        rowsWalked.set(0);
+
+        long t0 = System.nanoTime();
+        List<AssetDTO> all = service.fetchAllAssets(NET, false, PAGE);
+        log.info("{} vaults over 16 id ranges, parallelism 4: {} requests / {} rows walked / {} ms",
+                VAULTS, requests.get(), rowsWalked.get(), (System.nanoTime() - t0) / 1_000_000);
+
+        assertThat(all).extracting(a -> a.vaultAddress).containsExactlyElementsOf(ids);
+        assertThat(rowsWalked.get()).isEqualTo(VAULTS);
+    }
+
+    // ---------------------------- Internals ----------------------------
+
+    /** The former offset paging: first/skip until a short page. */
+    private List<String> skipScan() {
+        GraphQLClient client = new GraphQLClient(new RestTemplate(), MAPPER);
+        String query = "query Vaults($first:Int!,$skip:Int!){ " + FIELD
+                + "(first:$first,skip:$skip,orderBy:id,orderDirection:asc) { id symbol name evault } }";
+        List<String> out = new ArrayList<>();
+        for (int skip = 0; ; skip += PAGE) {
+            int n = client.postForEach(url, query, Map.of("first", PAGE, "skip", skip), FIELD, JsonNode.class,
+                    row -> out.add(row.get("id").asText()));
+            if (n < PAGE) return out;
+        }
+    }
+
+    private AssetService service(int parallelism) {
+        AppProps.Network net = new AppProps.Network();
+        net.getSubgraph().setUrl(url);
+        net.getSubgraph().setParallelism(parallelism);
+        AppProps props = new AppProps();
+        props.setNetwork(Map.of(NET, net));
+        return new AssetService(new GraphQLClient(new RestTemplate(), MAPPER), props);
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        JsonNode body = MAPPER.readTree(ex.getRequestBody());
+        String query = body.get("query").asText();
+        JsonNode vars = body.path("variables");
+        int first = vars.path("first").asInt(100);
+        int skip = vars.path("skip").asInt(0);
+
+        Matcher fm = FIELD_NAME.matcher(query);
+        String field = fm.find() ? fm.group(1) : FIELD;
+        String gt = null, gte = null, lt = null;
+        Matcher m = FILTER.matcher(query);
+        while (m.find()) {
+            switch (m.group(1)) {
+                case "id_gt" -> gt = m.group(2);
+                case "id_gte" -> gte = m.group(2);
+                default -> lt = m.group(2);
+            }
+        }
+
+        // index seek to the first row of the range, then walk skip + first rows
+        int from = 0;
+        if (gt != null) from = upperBound(gt);
+        else if (gte != null) from = lowerBound(gte);
+        int to = lt == null ? ids.size() : lowerBound(lt);
+        int start = Math.min(to, from + skip);
+        int end = Math.min(to, start + first);
+
+        ArrayNode rows = MAPPER.createArrayNode();
+        for (int i = start; i < end; i++) {
+            rows.add(MAPPER.createObjectNode().put("id", ids.get(i)).put("symbol", "V" + i).put("name", "Vault " + i));
+        }
+        requests.incrementAndGet();
+        rowsWalked.addAndGet(end - from);
+        long cost = REQUEST_MICROS + ROW_MICROS * (end - from);
+        charged.addAndGet(cost);
+        pause(cost);
+
+        ObjectNode resp = MAPPER.createObjectNode();
+        resp.putObject("data").set(field, rows);
+        byte[] bytes = MAPPER.writeValueAsBytes(resp);
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        ex.sendResponseHeaders(200, bytes.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    /** First index with id >= key. */
+    private int lowerBound(String key) {
+        int i = Collections.binarySearch(ids, key);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    /** First index with id > key. */
+    private int upperBound(String key) {
+        int i = Collections.binarySearch(ids, key);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    private static void pause(long micros) {
+        try {
+            Thread.sleep(micros / 1_000, (int) (micros % 1_000) * 1_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
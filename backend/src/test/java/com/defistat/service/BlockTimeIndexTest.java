@@ -0,0 +1,103 @@
+package com.defistat.service;
+
+import com.defistat.model.BlockAnchor;
+import com.defistat.repo.BlockAnchorRepo;
+import com.defistat.web3.EulerClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * blockAt against a simulated chain (~12s blocks with jitter and a few long stalls), counting RPC probes
+ * and persisted anchors per lookup.
+ */
+class BlockTimeIndexTest {
+
+    private static final int BLOCKS = 1_000_000;
+    private static final long GENESIS_TS = 1_600_000_000L;
+
+    private final long[] chain = new long[BLOCKS];
+    private final AtomicInteger probes = new AtomicInteger();
+    private final AtomicInteger saved = new AtomicInteger();
+    private BlockTimeIndex index;
+
+    @BeforeEach
+    void init() {
+        Random rnd = new Random(5);
+        chain[0] = GENESIS_TS;
+        for (int i = 1; i < BLOCKS; i++) {
+            long gap = 9 + rnd.nextInt(7);
+            if (rnd.nextInt(50_000) == 0) gap += 3_600; // chain stall
+            chain[i] = chain[i - 1] + gap;
+        }
+
+        EulerClient client = mock(EulerClient.class);
+        when(client.latestBlock(anyString())).thenReturn(BigInteger.valueOf(BLOCKS - 1));
+        when(client.blockTimestamp(anyString(), any(BigInteger.class))).thenAnswer(inv -> {
+            probes.incrementAndGet();
+            return chain[((BigInteger) inv.getArgument(1)).intValueExact()];
+        });
+        BlockAnchorRepo repo = mock(BlockAnchorRepo.class);
+        when(repo.findByNetworkOrderByBlockAsc(anyString())).thenReturn(List.of());
+        when(repo.save(any(BlockAnchor.class))).thenAnswer(inv -> {
+            saved.incrementAndGet();
+            return inv.getArgument(0);
+        });
+        index = new BlockTimeIndex(client, repo);
+    }
+
+    @Test
+    void lookupsLandWithinToleranceInAFewProbes() {
+        index.blockAt("test", Instant.ofEpochSecond(chain[BLOCKS / 2])); // warm head and genesis
+        Random rnd = new Random(9);
+        int lookups = 500;
+        int totalProbes = 0;
+        for (int i = 0; i < lookups; i++) {
+            long t = chain[0] + (long) (rnd.nextDouble() * (chain[BLOCKS - 1] - chain[0]));
+            probes.set(0);
+            saved.set(0);
+
+            long block = index.blockAt("test", Instant.ofEpochSecond(t));
+
+            assertThat(chain[(int) block]).as("block %d for t=%d", block, t).isLessThanOrEqualTo(t);
+            boolean lastBeforeT = block + 1 < BLOCKS && chain[(int) block + 1] > t;
+            assertThat(lastBeforeT || t - chain[(int) block] <= BlockTimeIndex.TOLERANCE_SEC)
+                    .as("block %d is %ds before t", block, t - chain[(int) block]).isTrue();
+            assertThat(probes.get()).isLessThanOrEqualTo(BlockTimeIndex.MAX_PROBES);
+            assertThat(saved.get()).isLessThanOrEqualTo(2);
+            totalProbes += probes.get();
+        }
+        // about 2 on this chain: the first interpolation over a wide bracket is off by the accumulated jitter
+        assertThat((double) totalProbes / lookups).isLessThan(2.5);
+    }
+
+    @Test
+    void repeatedLookupNeedsNoRpc() {
+        Instant t = Instant.ofEpochSecond(chain[123_456] + 5);
+        long first = index.blockAt("test", t);
+        probes.set(0);
+        assertThat(index.blockAt("test", t)).isEqualTo(first);
+        assertThat(probes.get()).isZero();
+    }
+
+    @Test
+    void stallKeepsTheLastBlockBeforeIt() {
+        int stall = -1;
+        for (int i = 1; i < BLOCKS && stall < 0; i++) if (chain[i] - chain[i - 1] > 3_000) stall = i;
+        assertThat(stall).isPositive();
+        long t = chain[stall] - 100; // inside the gap
+        assertThat(index.blockAt("test", Instant.ofEpochSecond(t))).isEqualTo(stall - 1);
+        assertThat(probes.get()).isLessThanOrEqualTo(BlockTimeIndex.MAX_PROBES);
+    }
+}
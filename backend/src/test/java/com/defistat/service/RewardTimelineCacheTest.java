@@ -0,0 +1,76 @@
+package com.defistat.service;
+
+import com.defistat.model.RewardOpportunityDocument;
+import com.defistat.repo.RewardOpportunityRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Timeline loads racing ingest writes: a write that lands while the Mongo query runs must not be lost
+ * behind a cached timeline loaded before it.
+ */
+class RewardTimelineCacheTest {
+
+    private final RewardOpportunityRepository repo = mock(RewardOpportunityRepository.class);
+    private final RewardTimelineCache cache = new RewardTimelineCache(repo);
+    private final AtomicInteger queries = new AtomicInteger();
+
+    @BeforeEach
+    void init() {
+        ReflectionTestUtils.setField(cache, "maxTimelines", 16);
+    }
+
+    @Test
+    void writeDuringLoadIsNotHiddenByTheCache() {
+        RewardOpportunityDocument old = doc(1_000, 4.0);
+        RewardOpportunityDocument written = doc(2_000, 6.0);
+        when(repo.findTimeline("test", "0xa1", "collateral")).thenAnswer(inv -> {
+            if (queries.incrementAndGet() == 1) {
+                cache.onWritten(List.of(written)); // ingest commits while the query is in flight
+                return List.of(old);
+            }
+            return List.of(old, written);
+        });
+
+        assertThat(cache.get("test", "0xa1", "collateral").size()).isEqualTo(1); // the overlapped result, served once
+        assertThat(cache.get("test", "0xa1", "collateral").size()).isEqualTo(2); // reloaded, not the stale copy
+        assertThat(cache.get("test", "0xa1", "collateral").size()).isEqualTo(2);
+        assertThat(queries.get()).isEqualTo(2);
+    }
+
+    @Test
+    void writesAfterLoadExtendTheCachedTimeline() {
+        when(repo.findTimeline("test", "0xa1", "collateral")).thenAnswer(inv -> {
+            queries.incrementAndGet();
+            return List.of(doc(1_000, 4.0));
+        });
+
+        cache.get("test", "0xa1", "collateral");
+        cache.onWritten(List.of(doc(2_000, 6.0)));
+
+        RewardTimelineCache.Timeline t = cache.get("test", "0xa1", "collateral");
+        assertThat(t.size()).isEqualTo(2);
+        assertThat(t.aprAt(1)).isEqualTo(6.0);
+        assertThat(queries.get()).isEqualTo(1);
+    }
+
+    private static RewardOpportunityDocument doc(long tsMillis, double apr) {
+        return RewardOpportunityDocument.builder()
+                .network("test")
+                .vaultAddress("0xa1")
+                .role("collateral")
+                .status("LIVE")
+                .rewardApyPct(apr)
+                .ts(Instant.ofEpochMilli(tsMillis))
+                .build();
+    }
+}
@@ -0,0 +1,135 @@
+package com.defistat.service;
+
+import com.defistat.config.AppProps;
+import com.defistat.web3.MerklClient;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Merkl page validators against a local stub that answers 304 to a matching If-None-Match:
+ * they are committed only after the run's writes are stored, so a failed flush re-reads every page.
+ */
+class RewardsIngestAllServiceTest {
+
+    private static final String ETAG = "\"v1\"";
+    private static final String BODY = """
+            [{"id":"op-1","chainId":1,"action":"LEND","identifier":"0x00000000000000000000000000000000000000a1",
+              "status":"LIVE","apr":4.2,"aprRecord":{"timestamp":"1760000000"}},
+             {"id":"op-2","chainId":1,"action":"BORROW","identifier":"0x00000000000000000000000000000000000000a2",
+              "status":"LIVE","apr":1.5,"aprRecord":{"timestamp":"1760000000"}}]
+            """;
+
+    /** HTTP status of every page request, in order. */
+    private final List<Integer> statuses = new CopyOnWriteArrayList<>();
+    private final MongoTemplate mongo = mock(MongoTemplate.class);
+    private final BulkOperations ops = mock(BulkOperations.class);
+    private HttpServer server;
+    private RewardsIngestAllService service;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v4/opportunities", this::handle);
+        server.start();
+
+        MerklClient merkl = new MerklClient(new RestTemplate());
+        ReflectionTestUtils.setField(merkl, "baseUrl", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(merkl, "pageSize", 100);
+        ReflectionTestUtils.setField(merkl, "parallelPages", 1);
+
+        AppProps.Network net = new AppProps.Network();
+        net.setChainId("1");
+        AppProps props = new AppProps();
+        props.setNetwork(Map.of("test", net));
+
+        when(mongo.bulkOps(any(BulkOperations.BulkMode.class), any(Class.class))).thenReturn(ops);
+        service = new RewardsIngestAllService(merkl, mongo, mock(RewardStateCache.class),
+                mock(RewardTimelineCache.class), props);
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    void failedFlushLeadsToFullRefetch() {
+        when(ops.execute()).thenThrow(partialFailure());
+        service.ingestAll("test", "EULER");
+        service.ingestAll("test", "EULER");
+        assertThat(statuses).containsExactly(200, 200); // nothing committed: no If-None-Match sent
+
+        doReturn(BulkWriteResult.acknowledged(2, 0, 0, 0, List.of(), List.of())).when(ops).execute();
+        assertThat(service.ingestAll("test", "EULER")).isEqualTo(2);
+        assertThat(service.ingestAll("test", "EULER")).isZero();
+        assertThat(statuses).containsExactly(200, 200, 200, 304);
+    }
+
+    @Test
+    void failedWriteKeepsPagesUncommitted() {
+        when(ops.insert(anyList())).thenThrow(new IllegalStateException("connection reset"));
+        assertThatThrownBy(() -> service.ingestAll("test", "EULER")).isInstanceOf(IllegalStateException.class);
+
+        doReturn(ops).when(ops).insert(anyList());
+        when(ops.execute()).thenReturn(BulkWriteResult.acknowledged(2, 0, 0, 0, List.of(), List.of()));
+        assertThat(service.ingestAll("test", "EULER")).isEqualTo(2);
+        assertThat(statuses).containsExactly(200, 200);
+    }
+
+    // ---------------------------- Internals ----------------------------
+
+    private void handle(HttpExchange ex) throws IOException {
+        if (ETAG.equals(ex.getRequestHeaders().getFirst("If-None-Match"))) {
+            statuses.add(304);
+            ex.sendResponseHeaders(304, -1);
+            ex.close();
+            return;
+        }
+        statuses.add(200);
+        byte[] bytes = BODY.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        ex.getResponseHeaders().add("ETag", ETAG);
+        ex.sendResponseHeaders(200, bytes.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    /** Unordered bulk write where one of two inserts failed (e.g. duplicate key). */
+    private static BulkOperationException partialFailure() {
+        BulkWriteResult result = BulkWriteResult.acknowledged(1, 0, 0, 0, List.of(), List.of());
+        List<BulkWriteError> errors = List.of(new BulkWriteError(11000, "E11000 duplicate key", new BsonDocument(), 1));
+        return new BulkOperationException("partial",
+                new MongoBulkWriteException(result, errors, null, new ServerAddress(), Set.of()));
+    }
+}
@@ -0,0 +1,77 @@
+package com.defistat.service;
+
+import com.defistat.api.dto.AssetDTO;
+import com.defistat.repo.VaultCatalogRepo;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/** Catalog loads are serialised per network only. */
+class VaultCatalogServiceTest {
+
+    private final AssetService assets = mock(AssetService.class);
+    private final VaultCatalogRepo repo = mock(VaultCatalogRepo.class);
+    private final VaultCatalogService service = new VaultCatalogService(assets, repo);
+
+    @Test
+    void slowNetworkDoesNotBlockOthers() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(repo.findById(anyString())).thenReturn(Optional.empty());
+        when(assets.fetchAllAssets(eq("slow"), anyBoolean(), anyInt())).thenAnswer(inv -> {
+            entered.countDown();
+            release.await();
+            return List.of(vault("0xa1"));
+        });
+        when(assets.fetchAllAssets(eq("fast"), anyBoolean(), anyInt())).thenReturn(List.of(vault("0xb1")));
+
+        CompletableFuture<List<AssetDTO>> slow = CompletableFuture.supplyAsync(() -> service.list("slow"));
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<List<AssetDTO>> fast = CompletableFuture.supplyAsync(() -> service.list("fast"));
+        assertThat(fast.get(5, TimeUnit.SECONDS)).extracting(a -> a.vaultAddress).containsExactly("0xb1");
+        assertThat(slow).isNotDone();
+
+        release.countDown();
+        assertThat(slow.get(5, TimeUnit.SECONDS)).extracting(a -> a.vaultAddress).containsExactly("0xa1");
+    }
+
+    @Test
+    void concurrentFirstReadsOfOneNetworkLoadOnce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(repo.findById(anyString())).thenReturn(Optional.empty());
+        when(assets.fetchAllAssets(eq("net"), anyBoolean(), anyInt())).thenAnswer(inv -> {
+            release.await();
+            return List.of(vault("0xa1"));
+        });
+
+        CompletableFuture<List<AssetDTO>> a = CompletableFuture.supplyAsync(() -> service.list("net"));
+        CompletableFuture<List<AssetDTO>> b = CompletableFuture.supplyAsync(() -> service.list("net"));
+        release.countDown();
+
+        assertThat(a.get(5, TimeUnit.SECONDS)).isSameAs(b.get(5, TimeUnit.SECONDS));
+        verify(assets, times(1)).fetchAllAssets(eq("net"), anyBoolean(), anyInt());
+    }
+
+    // ---------------------------- Internals ----------------------------
+
+    private static AssetDTO vault(String address) {
+        AssetDTO a = new AssetDTO();
+        a.vaultAddress = address;
+        return a;
+    }
+}
@@ -0,0 +1,100 @@
+package com.defistat.web3;
+
+import org.junit.jupiter.api.Test;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EulerCallsTest {
+
+    private static final String VAULT = "0x1D2c3c5b4a8E7F60a0B1c2D3e4F5061728394aBc";
+
+    @Test
+    void selectorsMatchFunctionEncoder() {
+        assertThat(EulerCalls.TOTAL_ASSETS).isEqualTo(FunctionEncoder.encode(noArg("totalAssets")));
+        assertThat(EulerCalls.TOTAL_BORROWS).isEqualTo(FunctionEncoder.encode(noArg("totalBorrows")));
+        assertThat(EulerCalls.BORROW_APY_RAY).isEqualTo(FunctionEncoder.encode(noArg("borrowAPY_RAY")));
+        assertThat(EulerCalls.SUPPLY_APY_RAY).isEqualTo(FunctionEncoder.encode(noArg("supplyAPY_RAY")));
+    }
+
+    @Test
+    void getApysSplicesAddressLikeFunctionEncoder() {
+        String expected = FunctionEncoder.encode(getApysFunction(VAULT));
+        assertThat(EulerCalls.getApys(VAULT)).isEqualTo(expected);
+        assertThat(EulerCalls.getApys(VAULT.substring(2))).isEqualTo(expected);
+        assertThatThrownBy(() -> EulerCalls.getApys("0x1234")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void uint256RoundsLikeBigIntegerAroundTwoPow53() {
+        BigInteger p53 = BigInteger.ONE.shiftLeft(53);
+        for (long d = -3; d <= 5; d++) {
+            assertDecodes(p53.add(BigInteger.valueOf(d)));
+        }
+        // 2^54 + 1 / + 2 / + 3: ties to even and sticky bits beyond the 64-bit head
+        BigInteger p54 = BigInteger.ONE.shiftLeft(54);
+        for (long d = 1; d <= 3; d++) assertDecodes(p54.add(BigInteger.valueOf(d)));
+        assertDecodes(BigInteger.ONE.shiftLeft(64).add(BigInteger.ONE));
+        assertDecodes(BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE));
+    }
+
+    @Test
+    void uint256HandlesZeroAndMaxValue() {
+        assertDecodes(BigInteger.ZERO);
+        assertDecodes(BigInteger.ONE);
+        BigInteger max = BigInteger.ONE.shiftLeft(256).subtract(BigInteger.ONE);
+        assertDecodes(max);
+        assertThat(EulerCalls.uint256(word(max), 0)).isEqualTo(Math.scalb(1.0, 256));
+        // just below a rounding boundary: 2^256 - 2^202 keeps 53 bits set and must not round up
+        assertDecodes(BigInteger.ONE.shiftLeft(256).subtract(BigInteger.ONE.shiftLeft(203)));
+    }
+
+    @Test
+    void uint256MatchesBigIntegerOnRandomWords() {
+        Random rnd = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            assertDecodes(new BigInteger(1 + rnd.nextInt(256), rnd));
+        }
+    }
+
+    @Test
+    void uint256ReadsIndexedWordsAndRejectsShortData() {
+        BigInteger a = new BigInteger("123456789012345678901234567890");
+        BigInteger b = BigInteger.ONE.shiftLeft(200).add(BigInteger.TEN);
+        String hex = "0x" + Numeric.toHexStringNoPrefixZeroPadded(a, 64) + Numeric.toHexStringNoPrefixZeroPadded(b, 64);
+        assertThat(EulerCalls.uint256(hex, 0)).isEqualTo(a.doubleValue());
+        assertThat(EulerCalls.uint256(hex, 1)).isEqualTo(b.doubleValue());
+        assertThat(EulerCalls.hasWords(hex, 2)).isTrue();
+        assertThat(EulerCalls.hasWords(hex, 3)).isFalse();
+        assertThatThrownBy(() -> EulerCalls.uint256(hex, 2)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // ---------------------------- Internals ----------------------------
+
+    private static void assertDecodes(BigInteger v) {
+        assertThat(EulerCalls.uint256(word(v), 0)).as("uint256 %s", v).isEqualTo(v.doubleValue());
+    }
+
+    private static String word(BigInteger v) {
+        return "0x" + Numeric.toHexStringNoPrefixZeroPadded(v, 64);
+    }
+
+    private static Function noArg(String name) {
+        return new Function(name, List.of(), List.of(new TypeReference<Uint256>() {}));
+    }
+
+    private static Function getApysFunction(String vault) {
+        return new Function("getAPYs", List.of(new Address(vault)),
+                List.of(new TypeReference<Uint256>() {}, new TypeReference<Uint256>() {}));
+    }
+}
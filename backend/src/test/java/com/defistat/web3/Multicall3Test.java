@@ -0,0 +1,132 @@
+package com.defistat.web3;
+
+import org.junit.jupiter.api.Test;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.FunctionReturnDecoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Bool;
+import org.web3j.abi.datatypes.DynamicArray;
+import org.web3j.abi.datatypes.DynamicBytes;
+import org.web3j.abi.datatypes.DynamicStruct;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.utils.Numeric;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class Multicall3Test {
+
+    /** aggregate3 input tuple (address target, bool allowFailure, bytes callData). */
+    public static class Call3 extends DynamicStruct {
+        public Call3(Address target, Bool allowFailure, DynamicBytes callData) {
+            super(target, allowFailure, callData);
+        }
+    }
+
+    /** aggregate3 output tuple (bool success, bytes returnData). */
+    public static class Result3 extends DynamicStruct {
+        public Result3(Bool success, DynamicBytes returnData) {
+            super(success, returnData);
+        }
+    }
+
+    @Test
+    void encodeMatchesFunctionEncoder() {
+        Random rnd = new Random(7);
+        List<Multicall3.Call> calls = new ArrayList<>();
+        List<Call3> structs = new ArrayList<>();
+        String[] data = {
+                EulerCalls.TOTAL_ASSETS,                     // 4 bytes
+                EulerCalls.getApys(randomAddress(rnd)),      // 36 bytes
+                "0x",                                        // empty calldata
+                "0x" + "ab".repeat(32),                      // exactly one word
+                "0x" + "cd".repeat(65)                       // odd length, needs padding
+        };
+        for (String d : data) {
+            String target = randomAddress(rnd);
+            calls.add(new Multicall3.Call(target, d));
+            structs.add(new Call3(new Address(target), new Bool(true), new DynamicBytes(Numeric.hexStringToByteArray(d))));
+        }
+
+        String expected = FunctionEncoder.encode(new Function("aggregate3",
+                List.of(new DynamicArray<>(Call3.class, structs)), List.of()));
+        assertThat(Multicall3.encodeAggregate3(calls)).isEqualTo(expected);
+    }
+
+    @Test
+    void encodeEmptyBatchMatchesFunctionEncoder() {
+        String expected = FunctionEncoder.encode(new Function("aggregate3",
+                List.of(new DynamicArray<>(Call3.class, List.of())), List.of()));
+        assertThat(Multicall3.encodeAggregate3(List.of())).isEqualTo(expected);
+    }
+
+    @Test
+    void decodeReadsReturnDataEncodedByWeb3j() {
+        Random rnd = new Random(11);
+        List<Result3> results = new ArrayList<>();
+        List<Boolean> success = new ArrayList<>();
+        List<byte[]> payloads = new ArrayList<>();
+        int[] sizes = {64, 0, 32, 5, 100, 64};
+        for (int i = 0; i < sizes.length; i++) {
+            byte[] b = new byte[sizes[i]];
+            rnd.nextBytes(b);
+            boolean ok = i != 1;
+            success.add(ok);
+            payloads.add(b);
+            results.add(new Result3(new Bool(ok), new DynamicBytes(b)));
+        }
+        // ABI return data of aggregate3 = encoded parameters without selector
+        String returnData = "0x" + FunctionEncoder.encodeConstructor(List.of(new DynamicArray<>(Result3.class, results)));
+
+        List<Multicall3.Result> decoded = Multicall3.decodeAggregate3(returnData);
+        assertThat(decoded).hasSize(sizes.length);
+        for (int i = 0; i < sizes.length; i++) {
+            assertThat(decoded.get(i).success()).isEqualTo(success.get(i));
+            assertThat(decoded.get(i).returnData()).isEqualTo(Numeric.toHexString(payloads.get(i)));
+        }
+        assertThat(decoded.get(0).hasWords(2)).isTrue();
+        assertThat(decoded.get(1).hasWords(1)).isFalse(); // failed sub-call
+        assertThat(decoded.get(3).hasWords(1)).isFalse(); // 5 bytes < one word
+    }
+
+    @Test
+    void encodedCallDataDecodesBackWithFunctionReturnDecoder() {
+        Random rnd = new Random(3);
+        String target = randomAddress(rnd);
+        String callData = EulerCalls.getApys(randomAddress(rnd));
+        String encoded = Multicall3.encodeAggregate3(List.of(new Multicall3.Call(target, callData)));
+
+        // strip selector and decode the arguments back through web3j
+        Function outputs = new Function("aggregate3", List.of(),
+                List.of(new TypeReference<DynamicArray<Call3>>() {}));
+        Type<?> arg = FunctionReturnDecoder.decode("0x" + encoded.substring(10), outputs.getOutputParameters()).get(0);
+        List<?> decoded = ((DynamicArray<?>) arg).getValue();
+        assertThat(decoded).hasSize(1);
+        List<?> fields = ((Call3) decoded.get(0)).getValue();
+        assertThat(((Address) fields.get(0)).getValue()).isEqualTo(target.toLowerCase());
+        assertThat(((Bool) fields.get(1)).getValue()).isTrue();
+        assertThat(Numeric.toHexString(((DynamicBytes) fields.get(2)).getValue())).isEqualTo(callData);
+    }
+
+    @Test
+    void decodeRejectsTruncatedReturnData() {
+        List<Result3> results = List.of(new Result3(new Bool(true), new DynamicBytes(new byte[64])));
+        String full = FunctionEncoder.encodeConstructor(List.of(new DynamicArray<>(Result3.class, results)));
+        assertThatThrownBy(() -> Multicall3.decodeAggregate3("0x" + full.substring(0, full.length() - 64)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // ---------------------------- Internals ----------------------------
+
+    private static String randomAddress(Random rnd) {
+        byte[] b = new byte[20];
+        rnd.nextBytes(b);
+        return Numeric.toHexString(b);
+    }
+}
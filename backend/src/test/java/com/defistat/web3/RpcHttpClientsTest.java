@@ -0,0 +1,110 @@
+package com.defistat.web3;
+
+import com.defistat.config.AppProps;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * In-flight limits of the per-network client for synchronous calls (the way web3j's HttpService sends),
+ * against a local endpoint that holds every request for a while and records peak concurrency.
+ */
+class RpcHttpClientsTest {
+
+    private HttpServer server;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peak = new AtomicInteger();
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", ex -> {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] bytes = "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\"0x1\"}".getBytes();
+            ex.sendResponseHeaders(200, bytes.length);
+            inFlight.decrementAndGet();
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(bytes);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    void synchronousCallsRespectPerHostLimit() throws Exception {
+        OkHttpClient client = RpcHttpClients.forNetwork(new OkHttpClient(), http(64, 2));
+        int port = server.getAddress().getPort();
+
+        runConcurrently(client, 10, i -> "http://127.0.0.1:" + port);
+
+        assertThat(peak.get()).isEqualTo(2);
+    }
+
+    @Test
+    void synchronousCallsRespectNetworkLimitAcrossHosts() throws Exception {
+        OkHttpClient client = RpcHttpClients.forNetwork(new OkHttpClient(), http(3, 2));
+        int port = server.getAddress().getPort();
+
+        // two hosts, same server: 2 + 2 per-host slots, but only 3 for the network
+        runConcurrently(client, 12, i -> (i % 2 == 0 ? "http://127.0.0.1:" : "http://localhost:") + port);
+
+        assertThat(peak.get()).isEqualTo(3);
+    }
+
+    // ---------------------------- Internals ----------------------------
+
+    private static AppProps.Http http(int maxRequests, int maxRequestsPerHost) {
+        AppProps.Http cfg = new AppProps.Http();
+        cfg.setMaxRequests(maxRequests);
+        cfg.setMaxRequestsPerHost(maxRequestsPerHost);
+        return cfg;
+    }
+
+    private static void runConcurrently(OkHttpClient client, int n, IntFunction<String> url)
+            throws Exception {
+        List<Future<Integer>> calls = new ArrayList<>(n);
+        try (ExecutorService exec = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < n; i++) {
+                Request req = new Request.Builder().url(url.apply(i))
+                        .post(RequestBody.create("{}", MediaType.get("application/json"))).build();
+                calls.add(exec.submit(() -> {
+                    try (Response r = client.newCall(req).execute()) {
+                        r.body().string();
+                        return r.code();
+                    }
+                }));
+            }
+        }
+        for (Future<Integer> f : calls) assertThat(f.get()).isEqualTo(200);
+    }
+}
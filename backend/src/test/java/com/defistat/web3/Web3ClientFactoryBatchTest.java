@@ -0,0 +1,307 @@
+package com.defistat.web3;
+
+import com.defistat.config.AppProps;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthCall;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JSON-RPC batch transport against local stub endpoints: responses are matched to sub-requests by id,
+ * whatever order the provider answers in and whichever ids it drops.
+ */
+class Web3ClientFactoryBatchTest {
+
+    private static final Logger log = LoggerFactory.getLogger(Web3ClientFactoryBatchTest.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String NET = "test";
+
+    private final List<HttpServer> servers = new ArrayList<>();
+
+    @AfterEach
+    void stop() {
+        servers.forEach(s -> s.stop(0));
+    }
+
+    @Test
+    void reorderedResponsesMapBackById() {
+        Stub a = stub(Stub::reversed);
+        Web3ClientFactory factory = factory(50, a);
+
+        List<Transaction> txs = calls(20);
+        List<EthCall> out = factory.executeCallBatchWithFailover(NET, txs, DefaultBlockParameterName.LATEST);
+
+        assertEchoed(txs, out);
+        assertThat(a.received).hasSize(20);
+    }
+
+    @Test
+    void droppedIdsAreRetriedOnNextEndpointOnly() {
+        // first endpoint silently drops every third sub-request, second answers everything
+        Stub a = stub(req -> Stub.reversed(dropEveryThird(req)));
+        Stub b = stub(Stub::inOrder);
+        Web3ClientFactory factory = factory(50, a, b);
+
+        List<Transaction> txs = calls(30);
+        List<EthCall> out = factory.executeCallBatchWithFailover(NET, txs, DefaultBlockParameterName.LATEST);
+
+        assertEchoed(txs, out);
+        assertThat(a.received).hasSize(30);
+        assertThat(b.received).hasSize(10);
+    }
+
+    @Test
+    void retryableErrorsMoveOnWhileRevertsAreKept() {
+        Stub a = stub(req -> {
+            ArrayNode resp = MAPPER.createArrayNode();
+            for (int i = 0; i < req.size(); i++) {
+                JsonNode r = req.get(i);
+                if (i == 0) resp.add(error(r.get("id"), -32005, "429 Too Many Requests"));
+                else if (i == 1) resp.add(error(r.get("id"), 3, "execution reverted"));
+                else resp.add(echo(r));
+            }
+            return resp;
+        });
+        Stub b = stub(Stub::inOrder);
+        Web3ClientFactory factory = factory(50, a, b);
+
+        List<Transaction> txs = calls(4);
+        List<EthCall> out = factory.executeCallBatchWithFailover(NET, txs, DefaultBlockParameterName.LATEST);
+
+        assertThat(out.get(0).getValue()).isEqualTo(txs.get(0).getData()); // answered by the second endpoint
+        assertThat(out.get(1).hasError()).isTrue();                         // revert is final, not retried
+        assertThat(out.get(2).getValue()).isEqualTo(txs.get(2).getData());
+        assertThat(out.get(3).getValue()).isEqualTo(txs.get(3).getData());
+        assertThat(b.received).hasSize(1);
+    }
+
+    @Test
+    void slicesLargerThanMaxSizeKeepTheirIndexes() {
+        Stub a = stub(Stub::reversed);
+        Web3ClientFactory factory = factory(7, a);
+
+        List<Transaction> txs = calls(25);
+        List<EthCall> out = factory.executeCallBatchWithFailover(NET, txs, DefaultBlockParameterName.LATEST);
+
+        assertEchoed(txs, out);
+        assertThat(a.posts.get()).isEqualTo(4);
+    }
+
+    @Test
+    void rateLimitedSlicesQueueForTokens() {
+        Stub a = stub(Stub::inOrder);
+        Web3ClientFactory factory = factory(5, net -> net.getRpcUrls().get(0).setRps(20).setBurst(1), a);
+
+        List<Transaction> txs = calls(20);
+        long t0 = System.nanoTime();
+        List<EthCall> out = factory.executeCallBatchWithFailover(NET, txs, DefaultBlockParameterName.LATEST);
+
+        assertEchoed(txs, out);
+        assertThat(a.posts.get()).isEqualTo(4);
+        assertThat(Duration.ofNanos(System.nanoTime() - t0)).isGreaterThanOrEqualTo(Duration.ofMillis(140)); // 3 waits of 50ms
+    }
+
+    @Test
+    void slicesGiveUpAtTheCallDeadline() {
+        Stub a = stub(Stub::inOrder);
+        Web3ClientFactory factory = factory(5, net -> {
+            net.getRpcUrls().get(0).setRps(0.5).setBurst(1); // next token in 2s
+            net.getFailover().setDeadlineMs(300);
+        }, a);
+
+        List<Transaction> txs = calls(15);
+        long t0 = System.nanoTime();
+        List<EthCall> out = factory.executeCallBatchWithFailover(NET, txs, DefaultBlockParameterName.LATEST);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - t0)).isLessThan(Duration.ofSeconds(1));
+        assertThat(a.posts.get()).isEqualTo(1);
+        assertThat(out.stream().filter(Objects::nonNull)).hasSize(5);
+    }
+
+    /**
+     * Timing harness: N eth_calls as individual requests vs JSON-RPC batches against a local stub that adds
+     * a fixed delay per HTTP request (a stand-in for provider round trip). It measures per-request overhead
+     * only; real provider throughput depends on their batch limits and pricing and is not reproducible here.
+     * Run with DEFISTAT_BENCH=true ./gradlew test --tests '*Web3ClientFactoryBatchTest*'.
+     */
+    @Test
+    @EnabledIfEnvironmentVariable(named = "DEFISTAT_BENCH", matches = "true")
+    void compareBatchWithSingleCalls() {
+        Stub a = stub(req -> {
+            sleep(5);
+            return Stub.inOrder(req);
+        });
+        Web3ClientFactory factory = factory(50, a);
+        List<Transaction> txs = calls(500);
+
+        for (int round = 0; round < 3; round++) {
+            long t0 = System.nanoTime();
+            for (Transaction tx : txs) {
+                factory.executeWithFailover(NET, web3 -> {
+                    try {
+                        return web3.ethCall(tx, DefaultBlockParameterName.LATEST).send();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }, true);
+            }
+            long t1 = System.nanoTime();
+            List<EthCall> out = factory.executeCallBatchWithFailover(NET, txs, DefaultBlockParameterName.LATEST);
+            long t2 = System.nanoTime();
+            assertEchoed(txs, out);
+            log.info("round {}: {} single calls {} ms, batched (50/POST) {} ms",
+                    round, txs.size(), (t1 - t0) / 1_000_000, (t2 - t1) / 1_000_000);
+            assertThat(t2 - t1).isLessThan(t1 - t0);
+        }
+    }
+
+    // ---------------------------- Internals ----------------------------
+
+    /** Local JSON-RPC endpoint; answers a POST body (single object or array) with the given responder. */
+    private static final class Stub {
+        final List<JsonNode> received = new CopyOnWriteArrayList<>();
+        final AtomicInteger posts = new AtomicInteger();
+        String url;
+
+        static ArrayNode inOrder(ArrayNode req) {
+            ArrayNode resp = MAPPER.createArrayNode();
+            req.forEach(r -> resp.add(echo(r)));
+            return resp;
+        }
+
+        static ArrayNode reversed(ArrayNode req) {
+            List<JsonNode> list = new ArrayList<>();
+            inOrder(req).forEach(list::add);
+            Collections.reverse(list);
+            return MAPPER.createArrayNode().addAll(list);
+        }
+    }
+
+    private Stub stub(Function<ArrayNode, ArrayNode> responder) {
+        Stub stub = new Stub();
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            server.createContext("/", ex -> handle(ex, stub, responder));
+            server.start();
+            servers.add(server);
+            stub.url = "http://127.0.0.1:" + server.getAddress().getPort();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return stub;
+    }
+
+    private static void handle(HttpExchange ex, Stub stub, Function<ArrayNode, ArrayNode> responder) throws IOException {
+        JsonNode body = MAPPER.readTree(ex.getRequestBody());
+        stub.posts.incrementAndGet();
+        JsonNode resp;
+        if (body.isArray()) {
+            body.forEach(stub.received::add);
+            resp = responder.apply((ArrayNode) body);
+        } else {
+            stub.received.add(body);
+            resp = responder.apply(MAPPER.createArrayNode().add(body)).get(0);
+        }
+        byte[] bytes = MAPPER.writeValueAsBytes(resp);
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        ex.sendResponseHeaders(200, bytes.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    /** eth_call result = the calldata that was sent, so every response identifies its request. */
+    private static ObjectNode echo(JsonNode req) {
+        ObjectNode r = MAPPER.createObjectNode();
+        r.put("jsonrpc", "2.0");
+        r.set("id", req.get("id"));
+        r.put("result", req.get("params").get(0).get("data").asText());
+        return r;
+    }
+
+    private static ObjectNode error(JsonNode id, int code, String message) {
+        ObjectNode r = MAPPER.createObjectNode();
+        r.put("jsonrpc", "2.0");
+        r.set("id", id);
+        r.set("error", MAPPER.createObjectNode().put("code", code).put("message", message));
+        return r;
+    }
+
+    private static ArrayNode dropEveryThird(ArrayNode req) {
+        ArrayNode kept = MAPPER.createArrayNode();
+        for (int i = 0; i < req.size(); i++) if (i % 3 != 2) kept.add(req.get(i));
+        return kept;
+    }
+
+    private static Web3ClientFactory factory(int maxBatch, Stub... endpoints) {
+        return factory(maxBatch, net -> {}, endpoints);
+    }
+
+    private static Web3ClientFactory factory(int maxBatch, Consumer<AppProps.Network> tune, Stub... endpoints) {
+        AppProps.Network net = new AppProps.Network();
+        List<AppProps.RpcUrl> urls = new ArrayList<>();
+        for (Stub s : endpoints) urls.add(new AppProps.RpcUrl().setUrl(s.url));
+        net.setRpcUrls(urls);
+        net.setRpcSelection(AppProps.RpcSelection.ROUND_ROBIN);
+        net.getProbe().setEnabled(false);
+        net.getRpcBatch().setEnabled(true);
+        net.getRpcBatch().setMaxSize(maxBatch);
+        tune.accept(net);
+        AppProps props = new AppProps();
+        props.setNetwork(Map.of(NET, net));
+        return new Web3ClientFactory(props);
+    }
+
+    private static List<Transaction> calls(int n) {
+        List<Transaction> txs = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            txs.add(Transaction.createEthCallTransaction(null,
+                    "0x" + String.format("%040x", i + 1), "0x" + String.format("%064x", i)));
+        }
+        return txs;
+    }
+
+    private static void assertEchoed(List<Transaction> txs, List<EthCall> out) {
+        assertThat(out).hasSize(txs.size());
+        for (int i = 0; i < txs.size(); i++) {
+            assertThat(out.get(i)).as("response #%d", i).isNotNull();
+            assertThat(out.get(i).getValue()).as("response #%d", i).isEqualTo(txs.get(i).getData());
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}